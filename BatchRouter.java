@@ -0,0 +1,256 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class BatchRouter<T> implements AutoCloseable {
+    public enum Status {
+        FOUND, NO_PATH, UNKNOWN_PLACE, FAILED
+    }
+
+    private final Graph<T> graph;
+    private final Function<String, ? extends T> resolver;
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final int maxInFlight;
+
+    public BatchRouter(Graph<T> graph, Map<String, T> nameToNodeMap, int parallelism) {
+        this(graph, nameToNodeMap::get, new ForkJoinPool(parallelism), true, parallelism * 4);
+    }
+
+    public BatchRouter(Graph<T> graph, Function<String, ? extends T> resolver, ForkJoinPool pool, int maxInFlight) {
+        this(graph, resolver, pool, false, maxInFlight);
+    }
+
+    private BatchRouter(Graph<T> graph, Function<String, ? extends T> resolver, ForkJoinPool pool,
+                        boolean ownsPool, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.graph = readable(Objects.requireNonNull(graph));
+        this.resolver = Objects.requireNonNull(resolver);
+        this.pool = Objects.requireNonNull(pool);
+        this.ownsPool = ownsPool;
+        this.maxInFlight = maxInFlight;
+    }
+
+    private static <T> Graph<T> readable(Graph<T> graph) {
+        // A live ListGraph is not safe for concurrent readers; a prepared snapshot only ever gets read.
+        if (graph instanceof ListGraph) {
+            ListGraph<T> snapshot = ((ListGraph<T>) graph).snapshot();
+            snapshot.prepareQueries(snapshot.getRouteMode());
+            return snapshot;
+        }
+        return graph;
+    }
+
+    public void route(Iterator<Query> queries, boolean ordered, Consumer<? super Result<T>> sink) {
+        Objects.requireNonNull(sink);
+        Semaphore permits = new Semaphore(maxInFlight);
+        Emitter<T> emitter = new Emitter<>(ordered, sink);
+        long index = 0;
+        try {
+            while (queries.hasNext() && !emitter.failed()) {
+                Query query = queries.next();
+                long position = index++;
+                // Permits return only once a result reaches the sink, so neither the workers nor the
+                // reorder buffer can run more than maxInFlight queries ahead of the consumer.
+                permits.acquireUninterruptibly();
+                try {
+                    pool.execute(() -> {
+                        int released = 1;
+                        try {
+                            released = emitter.emit(resolve(position, query));
+                        } catch (Error e) {
+                            released = emitter.fail(e);
+                            throw e;
+                        } finally {
+                            permits.release(released);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        } finally {
+            permits.acquireUninterruptibly(maxInFlight);
+        }
+        emitter.rethrow();
+    }
+
+    public List<Result<T>> routeAll(List<Query> queries) {
+        List<Result<T>> results = new ArrayList<>(queries.size());
+        route(queries.iterator(), true, results::add);
+        return results;
+    }
+
+    private Result<T> resolve(long index, Query query) {
+        try {
+            // A throwing resolver still has to produce a result, or the ordered emitter waits on it forever.
+            T from = resolver.apply(query.getFrom());
+            T to = resolver.apply(query.getTo());
+            if (from == null || to == null) {
+                return new Result<>(index, query, Status.UNKNOWN_PLACE, null, DistanceMatrix.UNREACHABLE, null);
+            }
+            List<Edge<T>> path = graph.getPath(from, to);
+            if (path == null) {
+                int distance = from.equals(to) && graph.pathExists(from, to) ? 0 : DistanceMatrix.UNREACHABLE;
+                Status status = distance == 0 ? Status.FOUND : Status.NO_PATH;
+                return new Result<>(index, query, status, null, distance, null);
+            }
+            long distance = 0;
+            for (Edge<T> edge : path) {
+                distance += edge.getWeight();
+            }
+            return new Result<>(index, query, Status.FOUND, path, distance, null);
+        } catch (RuntimeException e) {
+            return new Result<>(index, query, Status.FAILED, null, DistanceMatrix.UNREACHABLE, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class Emitter<T> {
+        private final boolean ordered;
+        private final Consumer<? super Result<T>> sink;
+        private final Map<Long, Result<T>> pending = new HashMap<>();
+        private long next;
+        private Throwable failure;
+
+        Emitter(boolean ordered, Consumer<? super Result<T>> sink) {
+            this.ordered = ordered;
+            this.sink = sink;
+        }
+
+        // The sink is only ever called by one thread at a time, so it needs no synchronization of its own.
+        synchronized int emit(Result<T> result) {
+            if (failure != null) {
+                return 1;
+            }
+            if (!ordered) {
+                deliver(result);
+                return 1;
+            }
+            pending.put(result.getIndex(), result);
+            int released = 0;
+            Result<T> ready;
+            while (failure == null && (ready = pending.remove(next)) != null) {
+                next++;
+                released++;
+                deliver(ready);
+            }
+            return failure == null ? released : released + drop();
+        }
+
+        synchronized int fail(Throwable error) {
+            if (failure == null) {
+                failure = error;
+            }
+            return 1 + drop();
+        }
+
+        private void deliver(Result<T> result) {
+            try {
+                sink.accept(result);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private int drop() {
+            int dropped = pending.size();
+            pending.clear();
+            return dropped;
+        }
+
+        synchronized boolean failed() {
+            return failure != null;
+        }
+
+        synchronized void rethrow() {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+    }
+
+    public static final class Query {
+        private final String from;
+        private final String to;
+
+        public Query(String from, String to) {
+            this.from = Objects.requireNonNull(from);
+            this.to = Objects.requireNonNull(to);
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        @Override
+        public String toString() {
+            return from + " -> " + to;
+        }
+    }
+
+    public static final class Result<T> {
+        private final long index;
+        private final Query query;
+        private final Status status;
+        private final List<Edge<T>> path;
+        private final long distance;
+        private final RuntimeException error;
+
+        Result(long index, Query query, Status status, List<Edge<T>> path, long distance, RuntimeException error) {
+            this.index = index;
+            this.query = query;
+            this.status = status;
+            this.path = path;
+            this.distance = distance;
+            this.error = error;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public List<Edge<T>> getPath() {
+            return path;
+        }
+
+        public long getDistance() {
+            return distance;
+        }
+
+        public RuntimeException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %s %s %d", index, query, status, distance);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+public class BinaryGraphFile {
+    static final int MAGIC = 0x46424752;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 256;
+
+    static final int BACKGROUND = 0;
+    static final int PLACE_NAME_OFFSETS = 1;
+    static final int PLACE_NAMES = 2;
+    static final int PLACE_HASH = 3;
+    static final int X = 4;
+    static final int Y = 5;
+    static final int ARC_OFFSETS = 6;
+    static final int ARC_TARGETS = 7;
+    static final int ARC_WEIGHTS = 8;
+    static final int ARC_NAMES = 9;
+    static final int EDGE_NAME_OFFSETS = 10;
+    static final int EDGE_NAMES = 11;
+    static final int SECTION_COUNT = 12;
+
+    static final int MAGIC_AT = 0;
+    static final int VERSION_AT = 4;
+    static final int PLACES_AT = 8;
+    static final int ARCS_AT = 12;
+    static final int EDGE_NAMES_AT = 16;
+    static final int HASH_SLOTS_AT = 20;
+    static final int PAYLOAD_CRC_AT = 24;
+    static final int HEADER_CRC_AT = 28;
+    static final int SECTIONS_AT = 32;
+
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private BinaryGraphFile() {
+    }
+
+    public static void textToBinary(Path text, Path binary) throws IOException {
+        Network network = new Network();
+        GraphFileParser.load(text, network);
+        write(binary, network);
+    }
+
+    public static void binaryToText(Path binary, Path text) throws IOException {
+        MappedGraph graph = MappedGraph.open(binary, true);
+        try (BufferedWriter writer = Files.newBufferedWriter(text, StandardCharsets.UTF_8)) {
+            writer.write(graph.getBackground());
+            writer.newLine();
+            StringBuilder places = new StringBuilder();
+            for (int place = 0; place < graph.nodeCount(); place++) {
+                if (place > 0) {
+                    places.append(';');
+                }
+                places.append(graph.nodeAt(place)).append(';')
+                        .append(graph.getX(place)).append(';')
+                        .append(graph.getY(place));
+            }
+            writer.write(places.toString());
+            writer.newLine();
+            // Every connection is stored as two arcs; only the one pointing to the higher id is written.
+            for (int place = 0; place < graph.nodeCount(); place++) {
+                for (int arc = graph.arcBegin(place); arc < graph.arcEnd(place); arc++) {
+                    int target = graph.arcTarget(arc);
+                    if (target >= place) {
+                        writer.write(graph.nodeAt(place) + ";" + graph.nodeAt(target) + ";"
+                                + graph.arcName(arc) + ";" + graph.arcWeight(arc));
+                        writer.newLine();
+                    }
+                }
+            }
+        }
+    }
+
+    static int hash(byte[] bytes, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    static int hashSlots(int placeCount) {
+        return Integer.highestOneBit(Math.max(placeCount, 1) * 2 - 1) << 1;
+    }
+
+    private static void write(Path binary, Network network) throws IOException {
+        int placeCount = network.names.size();
+        int[] offsets = new int[placeCount + 1];
+        for (int i = 0; i < network.connectionCount; i++) {
+            offsets[network.from[i] + 1]++;
+            if (network.from[i] != network.to[i]) {
+                offsets[network.to[i] + 1]++;
+            }
+        }
+        for (int place = 0; place < placeCount; place++) {
+            offsets[place + 1] += offsets[place];
+        }
+        int arcCount = offsets[placeCount];
+
+        // Arcs are sorted by target within each place so lookups between two places can binary search.
+        long[] arcs = new long[arcCount];
+        int[] fill = Arrays.copyOf(offsets, placeCount);
+        for (int i = 0; i < network.connectionCount; i++) {
+            arcs[fill[network.from[i]]++] = ((long) network.to[i] << 32) | i;
+            if (network.from[i] != network.to[i]) {
+                arcs[fill[network.to[i]]++] = ((long) network.from[i] << 32) | i;
+            }
+        }
+        for (int place = 0; place < placeCount; place++) {
+            Arrays.sort(arcs, offsets[place], offsets[place + 1]);
+        }
+
+        byte[][] placeNames = new byte[placeCount][];
+        for (int place = 0; place < placeCount; place++) {
+            placeNames[place] = network.names.get(place).getBytes(StandardCharsets.UTF_8);
+        }
+        int slots = hashSlots(placeCount);
+        int[] table = new int[slots];
+        for (int place = 0; place < placeCount; place++) {
+            byte[] key = placeNames[place];
+            int slot = hash(key, 0, key.length) & (slots - 1);
+            while (table[slot] != 0 && !Arrays.equals(placeNames[table[slot] - 1], key)) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            table[slot] = place + 1;
+        }
+
+        long[] sectionOffsets = new long[SECTION_COUNT];
+        long[] sectionLengths = new long[SECTION_COUNT];
+        try (FileChannel file = FileChannel.open(binary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(file);
+            out.section(BACKGROUND, sectionOffsets);
+            out.putBytes(network.background.getBytes(StandardCharsets.UTF_8));
+            out.end(BACKGROUND, sectionOffsets, sectionLengths);
+
+            out.section(PLACE_NAME_OFFSETS, sectionOffsets);
+            int nameOffset = 0;
+            out.putInt(0);
+            for (byte[] name : placeNames) {
+                nameOffset += name.length;
+                out.putInt(nameOffset);
+            }
+            out.end(PLACE_NAME_OFFSETS, sectionOffsets, sectionLengths);
+
+            out.section(PLACE_NAMES, sectionOffsets);
+            for (byte[] name : placeNames) {
+                out.putBytes(name);
+            }
+            out.end(PLACE_NAMES, sectionOffsets, sectionLengths);
+
+            out.section(PLACE_HASH, sectionOffsets);
+            for (int slot : table) {
+                out.putInt(slot);
+            }
+            out.end(PLACE_HASH, sectionOffsets, sectionLengths);
+
+            out.section(X, sectionOffsets);
+            for (int place = 0; place < placeCount; place++) {
+                out.putDouble(network.x[place]);
+            }
+            out.end(X, sectionOffsets, sectionLengths);
+
+            out.section(Y, sectionOffsets);
+            for (int place = 0; place < placeCount; place++) {
+                out.putDouble(network.y[place]);
+            }
+            out.end(Y, sectionOffsets, sectionLengths);
+
+            out.section(ARC_OFFSETS, sectionOffsets);
+            for (int offset : offsets) {
+                out.putInt(offset);
+            }
+            out.end(ARC_OFFSETS, sectionOffsets, sectionLengths);
+
+            out.section(ARC_TARGETS, sectionOffsets);
+            for (long arc : arcs) {
+                out.putInt((int) (arc >>> 32));
+            }
+            out.end(ARC_TARGETS, sectionOffsets, sectionLengths);
+
+            out.section(ARC_WEIGHTS, sectionOffsets);
+            for (long arc : arcs) {
+                out.putInt(network.weight[(int) arc]);
+            }
+            out.end(ARC_WEIGHTS, sectionOffsets, sectionLengths);
+
+            out.section(ARC_NAMES, sectionOffsets);
+            for (long arc : arcs) {
+                out.putInt(network.nameId[(int) arc]);
+            }
+            out.end(ARC_NAMES, sectionOffsets, sectionLengths);
+
+            List<byte[]> edgeNames = new ArrayList<>(network.edgeNames.size());
+            for (String name : network.edgeNames) {
+                edgeNames.add(name.getBytes(StandardCharsets.UTF_8));
+            }
+            out.section(EDGE_NAME_OFFSETS, sectionOffsets);
+            nameOffset = 0;
+            out.putInt(0);
+            for (byte[] name : edgeNames) {
+                nameOffset += name.length;
+                out.putInt(nameOffset);
+            }
+            out.end(EDGE_NAME_OFFSETS, sectionOffsets, sectionLengths);
+
+            out.section(EDGE_NAMES, sectionOffsets);
+            for (byte[] name : edgeNames) {
+                out.putBytes(name);
+            }
+            out.end(EDGE_NAMES, sectionOffsets, sectionLengths);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC_AT, MAGIC);
+            header.putInt(VERSION_AT, VERSION);
+            header.putInt(PLACES_AT, placeCount);
+            header.putInt(ARCS_AT, arcCount);
+            header.putInt(EDGE_NAMES_AT, edgeNames.size());
+            header.putInt(HASH_SLOTS_AT, slots);
+            header.putInt(PAYLOAD_CRC_AT, (int) out.checksum.getValue());
+            for (int section = 0; section < SECTION_COUNT; section++) {
+                header.putLong(SECTIONS_AT + 16 * section, sectionOffsets[section]);
+                header.putLong(SECTIONS_AT + 16 * section + 8, sectionLengths[section]);
+            }
+            header.putInt(HEADER_CRC_AT, headerChecksum(header));
+            long at = 0;
+            while (header.hasRemaining()) {
+                at += file.write(header, at);
+            }
+        }
+    }
+
+    static int headerChecksum(ByteBuffer header) {
+        // The checksum field itself is skipped so the same routine verifies what it wrote.
+        CRC32C checksum = new CRC32C();
+        checksum.update(header.duplicate().position(0).limit(HEADER_CRC_AT));
+        checksum.update(header.duplicate().position(HEADER_CRC_AT + 4).limit(HEADER_BYTES));
+        return (int) checksum.getValue();
+    }
+
+    private static final class Output {
+        private final FileChannel file;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C checksum = new CRC32C();
+        private long position = HEADER_BYTES;
+
+        Output(FileChannel file) {
+            this.file = file;
+        }
+
+        void section(int section, long[] offsets) throws IOException {
+            while (position % 8 != 0) {
+                put((byte) 0);
+            }
+            offsets[section] = position;
+        }
+
+        void end(int section, long[] offsets, long[] lengths) {
+            lengths[section] = position - offsets[section];
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+            position += 8;
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for (byte value : bytes) {
+                put(value);
+            }
+        }
+
+        private void put(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+            position++;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            long at = position - buffer.remaining();
+            while (buffer.hasRemaining()) {
+                at += file.write(buffer, at);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static final class Network implements GraphFileParser.Builder<Integer> {
+        private String background = "";
+        private final List<String> names = new ArrayList<>();
+        private double[] x = new double[16];
+        private double[] y = new double[16];
+        private final Set<Long> connected = new HashSet<>();
+        private final Map<String, Integer> edgeNameIds = new HashMap<>();
+        private final List<String> edgeNames = new ArrayList<>();
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int[] weight = new int[16];
+        private int[] nameId = new int[16];
+        private int connectionCount;
+
+        @Override
+        public void background(String location) {
+            background = location;
+        }
+
+        @Override
+        public Integer place(String name, double placeX, double placeY) {
+            int place = names.size();
+            if (place == x.length) {
+                x = Arrays.copyOf(x, place * 2);
+                y = Arrays.copyOf(y, place * 2);
+            }
+            names.add(name);
+            x[place] = placeX;
+            y[place] = placeY;
+            return place;
+        }
+
+        @Override
+        public void connection(Integer place1, Integer place2, String name, int connectionWeight) {
+            // Same rule as PathFinder: the first line for a pair of places wins, in either direction.
+            long key = ((long) Math.min(place1, place2) << 32) | Math.max(place1, place2);
+            if (!connected.add(key)) {
+                return;
+            }
+            int i = connectionCount++;
+            if (i == from.length) {
+                from = Arrays.copyOf(from, i * 2);
+                to = Arrays.copyOf(to, i * 2);
+                weight = Arrays.copyOf(weight, i * 2);
+                nameId = Arrays.copyOf(nameId, i * 2);
+            }
+            from[i] = place1;
+            to[i] = place2;
+            weight[i] = connectionWeight;
+            nameId[i] = edgeNameIds.computeIfAbsent(name, n -> {
+                edgeNames.add(n);
+                return edgeNames.size() - 1;
+            });
+        }
+    }
+}
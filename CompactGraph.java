@@ -0,0 +1,399 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+public class CompactGraph<T> implements Graph<T> {
+
+    private final Object[] nodes;
+    private final Map<T, Integer> indices;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] nameIds;
+    private final String[] names;
+
+    private CompactGraph(Object[] nodes, Map<T, Integer> indices, int[] offsets, int[] targets,
+                         int[] weights, int[] nameIds, String[] names) {
+        this.nodes = nodes;
+        this.indices = indices;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.nameIds = nameIds;
+        this.names = names;
+    }
+
+    public static <T> CompactGraph<T> of(ListGraph<T> graph) {
+        Set<T> graphNodes = graph.nodeView();
+        int nodeCount = graphNodes.size();
+        Object[] nodes = new Object[nodeCount];
+        Map<T, Integer> indices = new HashMap<>(nodeCount * 4 / 3 + 1);
+
+        // Breadth-first numbering keeps neighbouring places close together in the arrays.
+        int next = 0;
+        for (T start : graphNodes) {
+            if (indices.containsKey(start)) {
+                continue;
+            }
+            int head = next;
+            indices.put(start, next);
+            nodes[next++] = start;
+            while (head < next) {
+                @SuppressWarnings("unchecked")
+                T current = (T) nodes[head++];
+                for (Edge<T> edge : graph.edgeViewFrom(current)) {
+                    T destination = edge.getDestination();
+                    if (!indices.containsKey(destination)) {
+                        indices.put(destination, next);
+                        nodes[next++] = destination;
+                    }
+                }
+            }
+        }
+
+        int[] offsets = new int[nodeCount + 1];
+        List<Collection<Edge<T>>> adjacency = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            @SuppressWarnings("unchecked")
+            Collection<Edge<T>> edges = graph.edgeViewFrom((T) nodes[i]);
+            adjacency.add(edges);
+            offsets[i + 1] = offsets[i] + edges.size();
+        }
+
+        int arcCount = offsets[nodeCount];
+        int[] targets = new int[arcCount];
+        int[] weights = new int[arcCount];
+        int[] nameIds = new int[arcCount];
+        Map<String, Integer> nameTable = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        long[] scratch = new long[0];
+        for (int i = 0; i < nodeCount; i++) {
+            Collection<Edge<T>> edges = adjacency.get(i);
+            if (scratch.length < edges.size()) {
+                scratch = new long[edges.size()];
+            }
+            int[] edgeNameIds = new int[edges.size()];
+            int[] edgeWeights = new int[edges.size()];
+            int k = 0;
+            for (Edge<T> edge : edges) {
+                Integer nameId = nameTable.get(edge.getName());
+                if (nameId == null) {
+                    nameId = names.size();
+                    nameTable.put(edge.getName(), nameId);
+                    names.add(edge.getName());
+                }
+                edgeNameIds[k] = nameId;
+                edgeWeights[k] = edge.getWeight();
+                scratch[k] = ((long) indices.get(edge.getDestination()) << 32) | k;
+                k++;
+            }
+            // Arcs are sorted by target so getEdgeBetween can binary search.
+            Arrays.sort(scratch, 0, k);
+            for (int j = 0; j < k; j++) {
+                int original = (int) scratch[j];
+                int arc = offsets[i] + j;
+                targets[arc] = (int) (scratch[j] >>> 32);
+                weights[arc] = edgeWeights[original];
+                nameIds[arc] = edgeNameIds[original];
+            }
+        }
+        return new CompactGraph<>(nodes, indices, offsets, targets, weights, nameIds,
+                names.toArray(new String[0]));
+    }
+
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    public int arcCount() {
+        return targets.length;
+    }
+
+    public int indexOf(T node) {
+        Integer index = indices.get(node);
+        return index == null ? -1 : index;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T nodeAt(int index) {
+        return (T) nodes[index];
+    }
+
+    public int arcBegin(int node) {
+        return offsets[node];
+    }
+
+    public int arcEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    public int arcTarget(int arc) {
+        return targets[arc];
+    }
+
+    public int arcWeight(int arc) {
+        return weights[arc];
+    }
+
+    public String arcName(int arc) {
+        return names[nameIds[arc]];
+    }
+
+    public int findArc(int from, int to) {
+        int low = offsets[from];
+        int high = offsets[from + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (targets[mid] < to) {
+                low = mid + 1;
+            } else if (targets[mid] > to) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public Edge<T> edgeAt(int from, int arc) {
+        return new Edge<>(nodeAt(from), nodeAt(targets[arc]), arcName(arc), weights[arc]);
+    }
+
+    public long estimatedBytes() {
+        long arrays = 4L * (offsets.length + targets.length + weights.length + nameIds.length)
+                + 8L * nodes.length;
+        long index = 48L * indices.size();
+        return arrays + index;
+    }
+
+    public void add(T node) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void connect(T node1, T node2, String name, int weight) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void setConnectionWeight(T node1, T node2, int weight) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void disconnect(T node1, T node2) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void remove(T node) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Set<T> getNodes() {
+        return new HashSet<>(indices.keySet());
+    }
+
+    public Collection<Edge<T>> getEdgesFrom(T node) {
+        int index = requireIndex(node);
+        List<Edge<T>> edges = new ArrayList<>(offsets[index + 1] - offsets[index]);
+        for (int arc = offsets[index]; arc < offsets[index + 1]; arc++) {
+            edges.add(edgeAt(index, arc));
+        }
+        return edges;
+    }
+
+    public Set<T> nodeView() {
+        return Collections.unmodifiableSet(indices.keySet());
+    }
+
+    public Collection<Edge<T>> edgeViewFrom(T node) {
+        int index = requireIndex(node);
+        return new AbstractList<Edge<T>>() {
+            @Override
+            public Edge<T> get(int i) {
+                if (i < 0 || i >= size()) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return edgeAt(index, offsets[index] + i);
+            }
+
+            @Override
+            public int size() {
+                return offsets[index + 1] - offsets[index];
+            }
+        };
+    }
+
+    public void forEachEdgeFrom(T node, Consumer<? super Edge<T>> action) {
+        int index = requireIndex(node);
+        for (int arc = offsets[index]; arc < offsets[index + 1]; arc++) {
+            action.accept(edgeAt(index, arc));
+        }
+    }
+
+    public void forEachNeighbour(T node, NeighbourVisitor<? super T> visitor) {
+        int index = requireIndex(node);
+        for (int arc = offsets[index]; arc < offsets[index + 1]; arc++) {
+            visitor.visit(nodeAt(targets[arc]), weights[arc]);
+        }
+    }
+
+    public Edge<T> getEdgeBetween(T node1, T node2) {
+        int from = requireIndex(node1);
+        int to = requireIndex(node2);
+        int arc = findArc(from, to);
+        return arc < 0 ? null : edgeAt(from, arc);
+    }
+
+    public boolean pathExists(T from, T to) {
+        int source = indexOf(from);
+        int target = indexOf(to);
+        if (source < 0 || target < 0) {
+            return false;
+        }
+        if (source == target) {
+            return true;
+        }
+        // The per-thread search context supplies the visited stamps and queue, so repeated checks allocate nothing.
+        SearchContext context = SearchContext.acquire(SearchContext.FORWARD, nodes.length);
+        int[] queue = context.queue();
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        context.mark(source);
+        while (head < tail) {
+            int current = queue[head++];
+            for (int arc = offsets[current]; arc < offsets[current + 1]; arc++) {
+                int next = targets[arc];
+                if (next == target) {
+                    return true;
+                }
+                if (context.mark(next)) {
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    public List<Edge<T>> getPath(T from, T to) {
+        int source = indexOf(from);
+        int target = indexOf(to);
+        if (source < 0 || target < 0 || source == target) {
+            return null;
+        }
+
+        SearchContext context = SearchContext.acquire(SearchContext.FORWARD, nodes.length);
+        IndexedHeap queue = context.heap();
+        context.reach(source, 0, -1, null);
+        queue.push(source, 0);
+        boolean found = false;
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (current == target) {
+                found = true;
+                break;
+            }
+            long distance = context.distance(current);
+            for (int arc = offsets[current]; arc < offsets[current + 1]; arc++) {
+                int next = targets[arc];
+                long newDistance = distance + weights[arc];
+                if (newDistance < context.distance(next)) {
+                    context.reach(next, newDistance, current, null);
+                    queue.pushOrDecrease(next, newDistance);
+                }
+            }
+        }
+        return found ? buildPath(context, source, target) : null;
+    }
+
+    public long[] getDistances(T from, List<T> targets) {
+        long[] distances = new long[targets.size()];
+        int source = indexOf(from);
+        if (source < 0) {
+            Arrays.fill(distances, DistanceMatrix.UNREACHABLE);
+            return distances;
+        }
+        SearchContext context = searchTargets(source, targets);
+        for (int i = 0; i < distances.length; i++) {
+            int target = indexOf(targets.get(i));
+            long distance = target < 0 ? Long.MAX_VALUE : context.distance(target);
+            distances[i] = distance == Long.MAX_VALUE ? DistanceMatrix.UNREACHABLE : distance;
+        }
+        return distances;
+    }
+
+    public List<List<Edge<T>>> getPaths(T from, List<T> targets) {
+        List<List<Edge<T>>> paths = new ArrayList<>(targets.size());
+        int source = indexOf(from);
+        if (source < 0) {
+            paths.addAll(Collections.nCopies(targets.size(), null));
+            return paths;
+        }
+        SearchContext context = searchTargets(source, targets);
+        for (T to : targets) {
+            int target = indexOf(to);
+            boolean reached = target >= 0 && target != source && context.isReached(target);
+            paths.add(reached ? buildPath(context, source, target) : null);
+        }
+        return paths;
+    }
+
+    private SearchContext searchTargets(int source, List<T> wantedNodes) {
+        SearchContext wanted = SearchContext.acquire(SearchContext.BACKWARD, nodes.length);
+        int remaining = 0;
+        for (T to : wantedNodes) {
+            int target = indexOf(to);
+            if (target >= 0 && !wanted.isReached(target)) {
+                wanted.reach(target, 0, -1, null);
+                remaining++;
+            }
+        }
+        SearchContext context = SearchContext.acquire(SearchContext.FORWARD, nodes.length);
+        IndexedHeap queue = context.heap();
+        context.reach(source, 0, -1, null);
+        queue.push(source, 0);
+        while (remaining > 0 && !queue.isEmpty()) {
+            int current = queue.poll();
+            if (wanted.isReached(current)) {
+                remaining--;
+            }
+            long distance = context.distance(current);
+            for (int arc = offsets[current]; arc < offsets[current + 1]; arc++) {
+                int next = targets[arc];
+                long newDistance = distance + weights[arc];
+                if (newDistance < context.distance(next)) {
+                    context.reach(next, newDistance, current, null);
+                    queue.pushOrDecrease(next, newDistance);
+                }
+            }
+        }
+        return context;
+    }
+
+    private List<Edge<T>> buildPath(SearchContext context, int source, int target) {
+        List<Edge<T>> path = new ArrayList<>();
+        for (int current = target; current != source; current = context.parent(current)) {
+            int previous = context.parent(current);
+            path.add(edgeAt(previous, findArc(previous, current)));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private int requireIndex(T node) {
+        Integer index = indices.get(node);
+        if (index == null) {
+            throw new NoSuchElementException();
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < nodes.length; i++) {
+            sb.append(nodes[i].toString()).append("\n");
+            for (int arc = offsets[i]; arc < offsets[i + 1]; arc++) {
+                sb.append("  ").append(edgeAt(i, arc).toString()).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
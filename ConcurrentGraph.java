@@ -0,0 +1,249 @@
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ToDoubleFunction;
+
+public class ConcurrentGraph<T> implements Graph<T> {
+    private final ListGraph<T> graph;
+    private final StampedLock lock = new StampedLock();
+
+    public ConcurrentGraph() {
+        this(new ListGraph<>());
+    }
+
+    public ConcurrentGraph(ListGraph<T> graph) {
+        this.graph = Objects.requireNonNull(graph);
+    }
+
+    public void setCoordinates(ToDoubleFunction<? super T> xCoordinate, ToDoubleFunction<? super T> yCoordinate) {
+        long stamp = lock.writeLock();
+        try {
+            graph.setCoordinates(xCoordinate, yCoordinate);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public RouteMode getRouteMode() {
+        long stamp = lock.readLock();
+        try {
+            return graph.getRouteMode();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void setRouteMode(RouteMode routeMode) {
+        long stamp = lock.writeLock();
+        try {
+            graph.setRouteMode(routeMode);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void enablePathCache(int capacity) {
+        long stamp = lock.writeLock();
+        try {
+            graph.enablePathCache(capacity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public ListGraph<T> snapshot() {
+        long stamp = lock.writeLock();
+        try {
+            return graph.snapshot();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long getVersion() {
+        long stamp = lock.tryOptimisticRead();
+        long version = graph.getVersion();
+        if (lock.validate(stamp)) {
+            return version;
+        }
+        stamp = lock.readLock();
+        try {
+            return graph.getVersion();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void add(T node) {
+        long stamp = lock.writeLock();
+        try {
+            graph.add(node);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(T node) {
+        long stamp = lock.writeLock();
+        try {
+            graph.remove(node);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void connect(T node1, T node2, String name, int weight) {
+        long stamp = lock.writeLock();
+        try {
+            graph.connect(node1, node2, name, weight);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void disconnect(T node1, T node2) {
+        long stamp = lock.writeLock();
+        try {
+            graph.disconnect(node1, node2);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setConnectionWeight(T node1, T node2, int weight) {
+        long stamp = lock.writeLock();
+        try {
+            graph.setConnectionWeight(node1, node2, weight);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public Set<T> getNodes() {
+        long stamp = lock.readLock();
+        try {
+            return graph.getNodes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Set<Edge<T>> getEdgesFrom(T node) {
+        long stamp = lock.readLock();
+        try {
+            return graph.getEdgesFrom(node);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Edge<T> getEdgeBetween(T node1, T node2) {
+        // The adjacency maps are plain HashMaps a writer may be resizing, so even one lookup needs the lock.
+        long stamp = lock.readLock();
+        try {
+            return graph.getEdgeBetween(node1, node2);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean pathExists(T from, T to) {
+        long stamp = readPrepared(RouteMode.DIJKSTRA);
+        try {
+            return graph.pathExists(from, to);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<Edge<T>> getPath(T from, T to) {
+        return getPath(from, to, getRouteMode());
+    }
+
+    public List<Edge<T>> getPath(T from, T to, RouteMode mode) {
+        long stamp = readPrepared(mode);
+        try {
+            return graph.getPath(from, to, mode);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long[] getDistances(T from, List<T> targets) {
+        long stamp = lock.readLock();
+        try {
+            return graph.getDistances(from, targets);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<List<Edge<T>>> getPaths(T from, List<T> targets) {
+        long stamp = lock.readLock();
+        try {
+            return graph.getPaths(from, targets);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public T getNearest(double x, double y) {
+        long stamp = readPrepared(RouteMode.DIJKSTRA);
+        try {
+            return graph.getNearest(x, y);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<T> getNearest(double x, double y, int count, double maxDistance) {
+        long stamp = readPrepared(RouteMode.DIJKSTRA);
+        try {
+            return graph.getNearest(x, y, count, maxDistance);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<Edge<T>> getPathNear(double fromX, double fromY, double toX, double toY) {
+        // The mode is read once under the lock and passed on, so a concurrent setRouteMode cannot slip in between.
+        RouteMode mode = getRouteMode();
+        long stamp = readPrepared(mode);
+        try {
+            T from = graph.getNearest(fromX, fromY);
+            T to = graph.getNearest(toX, toY);
+            return from == null ? null : graph.getPath(from, to, mode);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long readPrepared(RouteMode mode) {
+        // Queries share the read lock; whoever finds derived state stale rebuilds it under the write lock.
+        long stamp = lock.readLock();
+        if (graph.isQueryReady(mode)) {
+            return stamp;
+        }
+        long writeStamp = lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0) {
+            lock.unlockRead(stamp);
+            writeStamp = lock.writeLock();
+        }
+        try {
+            graph.prepareQueries(mode);
+        } catch (RuntimeException | Error e) {
+            lock.unlockWrite(writeStamp);
+            throw e;
+        }
+        return lock.tryConvertToReadLock(writeStamp);
+    }
+
+    @Override
+    public String toString() {
+        long stamp = lock.readLock();
+        try {
+            return graph.toString();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
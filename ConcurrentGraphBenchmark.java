@@ -0,0 +1,163 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class ConcurrentGraphBenchmark {
+    private final ConcurrentGraph<Integer> graph = new ConcurrentGraph<>();
+    private final int side;
+    private final long seed;
+
+    public ConcurrentGraphBenchmark(int side, long seed) {
+        this.side = side;
+        this.seed = seed;
+        Random random = new Random(seed);
+        graph.setCoordinates(node -> node % side, node -> node / side);
+        for (int node = 0; node < side * side; node++) {
+            graph.add(node);
+        }
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = row * side + column;
+                if (column + 1 < side) {
+                    graph.connect(node, node + 1, "h" + node, 1 + random.nextInt(100));
+                }
+                if (row + 1 < side) {
+                    graph.connect(node, node + side, "v" + node, 1 + random.nextInt(100));
+                }
+            }
+        }
+    }
+
+    public Result run(int readers, long durationMillis, long writePauseMicros) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder queries = new LongAdder();
+        LongAdder writes = new LongAdder();
+        LongAdder failures = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < readers; i++) {
+            long readerSeed = seed + 31L * (i + 1);
+            tasks.add(executor.submit(() -> {
+                Random random = new Random(readerSeed);
+                await(start);
+                while (running.get()) {
+                    int from = random.nextInt(side * side);
+                    int to = random.nextInt(side * side);
+                    if (!isPath(graph.getPath(from, to), from, to) || !graph.pathExists(from, to)) {
+                        failures.increment();
+                    }
+                    queries.increment();
+                }
+            }));
+        }
+        tasks.add(executor.submit(() -> {
+            Random random = new Random(seed);
+            await(start);
+            while (running.get()) {
+                int node = random.nextInt(side * side);
+                int neighbour = node % side + 1 < side ? node + 1 : node - 1;
+                graph.setConnectionWeight(node, neighbour, 1 + random.nextInt(100));
+                writes.increment();
+                if (writePauseMicros > 0) {
+                    LockSupport.parkNanos(writePauseMicros * 1000);
+                }
+            }
+        }));
+
+        long began = System.nanoTime();
+        start.countDown();
+        Thread.sleep(durationMillis);
+        running.set(false);
+        long elapsed = System.nanoTime() - began;
+        executor.shutdown();
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return new Result(readers, queries.sum(), writes.sum(), failures.sum(), elapsed);
+    }
+
+    private boolean isPath(List<Edge<Integer>> path, int from, int to) {
+        // The grid is connected and weights stay positive, so every query must return a chained path.
+        if (from == to) {
+            return path == null;
+        }
+        if (path == null || path.isEmpty()) {
+            return false;
+        }
+        int at = from;
+        for (Edge<Integer> edge : path) {
+            if (edge.getFrom() != at) {
+                return false;
+            }
+            at = edge.getDestination();
+        }
+        return at == to;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static final class Result {
+        private final int readers;
+        private final long queries;
+        private final long writes;
+        private final long failures;
+        private final long elapsedNanos;
+
+        Result(int readers, long queries, long writes, long failures, long elapsedNanos) {
+            this.readers = readers;
+            this.queries = queries;
+            this.writes = writes;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public double getQueriesPerSecond() {
+            return queries * 1e9 / elapsedNanos;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("readers=%d queries/s=%.0f writes/s=%.0f failures=%d",
+                    readers, getQueriesPerSecond(), writes * 1e9 / elapsedNanos, failures);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long duration = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        long writePause = args.length > 2 ? Long.parseLong(args[2]) : 100;
+        RouteMode mode = args.length > 3 ? RouteMode.valueOf(args[3]) : RouteMode.BIDIRECTIONAL;
+        int maxReaders = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        ConcurrentGraphBenchmark benchmark = new ConcurrentGraphBenchmark(side, 42);
+        benchmark.graph.setRouteMode(mode);
+        benchmark.run(1, duration / 2, writePause);
+        long failures = 0;
+        for (int readers = 1; readers <= maxReaders; readers *= 2) {
+            Result result = benchmark.run(readers, duration, writePause);
+            failures += result.getFailures();
+            System.out.println(result);
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
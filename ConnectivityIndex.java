@@ -0,0 +1,101 @@
+import java.util.Arrays;
+
+public class ConnectivityIndex {
+    private int[] parents = new int[0];
+    private int[] sizes = new int[0];
+    private int[] next = new int[0];
+    private boolean[] dirty = new boolean[0];
+    private int capacity;
+    private int dirtyRoots;
+
+    public void ensureCapacity(int newCapacity) {
+        if (parents.length < newCapacity) {
+            int length = Math.max(newCapacity, parents.length + (parents.length >> 1));
+            parents = Arrays.copyOf(parents, length);
+            sizes = Arrays.copyOf(sizes, length);
+            next = Arrays.copyOf(next, length);
+            dirty = Arrays.copyOf(dirty, length);
+        }
+        for (int node = capacity; node < newCapacity; node++) {
+            reset(node);
+        }
+        capacity = Math.max(capacity, newCapacity);
+    }
+
+    public void clear() {
+        capacity = 0;
+        dirtyRoots = 0;
+    }
+
+    public int find(int node) {
+        // Halving only ever points a node at one of its ancestors, so finds may race each other between unions.
+        while (parents[node] != node) {
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+        return node;
+    }
+
+    public void union(int node1, int node2) {
+        int root1 = find(node1);
+        int root2 = find(node2);
+        if (root1 == root2) {
+            return;
+        }
+        if (sizes[root1] < sizes[root2]) {
+            int swap = root1;
+            root1 = root2;
+            root2 = swap;
+        }
+        parents[root2] = root1;
+        sizes[root1] += sizes[root2];
+        if (dirty[root1] && dirty[root2]) {
+            dirtyRoots--;
+        }
+        dirty[root1] |= dirty[root2];
+        // Splicing the two circular member lists keeps every component enumerable in O(size).
+        int after = next[root1];
+        next[root1] = next[root2];
+        next[root2] = after;
+    }
+
+    public void markDirty(int node) {
+        int root = find(node);
+        if (!dirty[root]) {
+            dirty[root] = true;
+            dirtyRoots++;
+        }
+    }
+
+    public boolean isDirty(int node) {
+        return dirty[find(node)];
+    }
+
+    public boolean hasDirtyComponents() {
+        return dirtyRoots > 0;
+    }
+
+    public int[] detach(int node) {
+        int root = find(node);
+        if (dirty[root]) {
+            dirtyRoots--;
+        }
+        int[] members = new int[sizes[root]];
+        int member = root;
+        for (int i = 0; i < members.length; i++) {
+            members[i] = member;
+            member = next[member];
+        }
+        for (int detached : members) {
+            reset(detached);
+        }
+        return members;
+    }
+
+    private void reset(int node) {
+        parents[node] = node;
+        sizes[node] = 1;
+        next[node] = node;
+        dirty[node] = false;
+    }
+}
@@ -0,0 +1,436 @@
+import java.util.*;
+
+public class ContractionHierarchy<T> {
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final ListGraph<T> graph;
+    private boolean autoRebuild = true;
+    private long builtVersion = -1;
+
+    private CompactGraph<T> base;
+    private int[] upOffsets;
+    private int[] upTargets;
+    private long[] upWeights;
+    private int[] upMiddles;
+    private int shortcutCount;
+    private long buildNanos;
+
+    private long queryCount;
+    private long queryNanos;
+    private long settledCount;
+    private int lastSettledCount;
+
+    public ContractionHierarchy(ListGraph<T> graph) {
+        this.graph = Objects.requireNonNull(graph);
+    }
+
+    public boolean isStale() {
+        return builtVersion != graph.getVersion();
+    }
+
+    public boolean isAutoRebuild() {
+        return autoRebuild;
+    }
+
+    public void setAutoRebuild(boolean autoRebuild) {
+        this.autoRebuild = autoRebuild;
+    }
+
+    public int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    public long getBuildTimeNanos() {
+        return buildNanos;
+    }
+
+    public synchronized long getQueryCount() {
+        return queryCount;
+    }
+
+    public synchronized long getTotalQueryNanos() {
+        return queryNanos;
+    }
+
+    public synchronized long getAverageQueryNanos() {
+        return queryCount == 0 ? 0 : queryNanos / queryCount;
+    }
+
+    public synchronized double getAverageSettledCount() {
+        return queryCount == 0 ? 0 : (double) settledCount / queryCount;
+    }
+
+    public synchronized int getLastSettledCount() {
+        return lastSettledCount;
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        long version = graph.getVersion();
+        base = CompactGraph.of(graph);
+        new Builder(base).contract();
+        builtVersion = version;
+        buildNanos = System.nanoTime() - start;
+    }
+
+    public List<Edge<T>> getPath(T from, T to) {
+        ensureCurrent();
+        long start = System.nanoTime();
+        int source = base.indexOf(from);
+        int target = base.indexOf(to);
+        if (source < 0 || target < 0 || source == target) {
+            return null;
+        }
+        SearchContext forward = SearchContext.acquire(SearchContext.FORWARD, base.nodeCount());
+        SearchContext backward = SearchContext.acquire(SearchContext.BACKWARD, base.nodeCount());
+        int meeting = search(forward, backward, source, target);
+        List<Edge<T>> path = null;
+        if (meeting >= 0) {
+            path = new ArrayList<>();
+            int[] chain = new int[16];
+            int length = 0;
+            for (int node = meeting; node != source; node = forward.parent(node)) {
+                if (length == chain.length) {
+                    chain = Arrays.copyOf(chain, length * 2);
+                }
+                chain[length++] = node;
+            }
+            int previous = source;
+            for (int i = length - 1; i >= 0; i--) {
+                unpack(previous, chain[i], path);
+                previous = chain[i];
+            }
+            for (int node = meeting; node != target; node = backward.parent(node)) {
+                unpack(node, backward.parent(node), path);
+            }
+        }
+        recordQuery(forward.settledCount() + backward.settledCount(), start);
+        return path;
+    }
+
+    public long getDistance(T from, T to) {
+        ensureCurrent();
+        long start = System.nanoTime();
+        int source = base.indexOf(from);
+        int target = base.indexOf(to);
+        if (source < 0 || target < 0) {
+            return -1;
+        }
+        if (source == target) {
+            return 0;
+        }
+        SearchContext forward = SearchContext.acquire(SearchContext.FORWARD, base.nodeCount());
+        SearchContext backward = SearchContext.acquire(SearchContext.BACKWARD, base.nodeCount());
+        int meeting = search(forward, backward, source, target);
+        recordQuery(forward.settledCount() + backward.settledCount(), start);
+        return meeting < 0 ? -1 : forward.distance(meeting) + backward.distance(meeting);
+    }
+
+    public boolean needsRebuild() {
+        return isStale() && (autoRebuild || base == null);
+    }
+
+    private void ensureCurrent() {
+        if (needsRebuild()) {
+            rebuild();
+        } else if (isStale()) {
+            throw new IllegalStateException("Contraction hierarchy is stale");
+        }
+    }
+
+    private synchronized void recordQuery(int settled, long start) {
+        lastSettledCount = settled;
+        settledCount += settled;
+        queryCount++;
+        queryNanos += System.nanoTime() - start;
+    }
+
+    private int search(SearchContext forward, SearchContext backward, int source, int target) {
+        forward.reach(source, 0, -1, null);
+        forward.heap().push(source, 0);
+        backward.reach(target, 0, -1, null);
+        backward.heap().push(target, 0);
+
+        long best = Long.MAX_VALUE;
+        int meeting = -1;
+        while (true) {
+            // Both searches only climb the hierarchy, so a side is done once its radius passes the best meeting.
+            boolean forwardOpen = !forward.heap().isEmpty() && forward.heap().peekKey() < best;
+            boolean backwardOpen = !backward.heap().isEmpty() && backward.heap().peekKey() < best;
+            if (!forwardOpen && !backwardOpen) {
+                break;
+            }
+            boolean forwardTurn = forwardOpen
+                    && (!backwardOpen || forward.heap().peekKey() <= backward.heap().peekKey());
+            SearchContext current = forwardTurn ? forward : backward;
+            SearchContext other = forwardTurn ? backward : forward;
+
+            int node = current.heap().poll();
+            current.countSettled();
+            long distance = current.distance(node);
+            if (other.isReached(node) && distance + other.distance(node) < best) {
+                best = distance + other.distance(node);
+                meeting = node;
+            }
+            for (int arc = upOffsets[node]; arc < upOffsets[node + 1]; arc++) {
+                int next = upTargets[arc];
+                long newDistance = distance + upWeights[arc];
+                if (newDistance < current.distance(next)) {
+                    current.reach(next, newDistance, node, null);
+                    current.heap().pushOrDecrease(next, newDistance);
+                }
+            }
+        }
+        return meeting;
+    }
+
+    private void unpack(int from, int to, List<Edge<T>> path) {
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = from;
+        stack[size++] = to;
+        while (size > 0) {
+            int b = stack[--size];
+            int a = stack[--size];
+            int middle = upMiddles[findUpArc(a, b)];
+            if (middle < 0) {
+                path.add(graph.getEdgeBetween(base.nodeAt(a), base.nodeAt(b)));
+                continue;
+            }
+            if (size + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            // Second half first so the first half is popped, and appended, before it.
+            stack[size++] = middle;
+            stack[size++] = b;
+            stack[size++] = a;
+            stack[size++] = middle;
+        }
+    }
+
+    private int findUpArc(int a, int b) {
+        int arc = findArc(a, b);
+        return arc >= 0 ? arc : findArc(b, a);
+    }
+
+    private int findArc(int from, int to) {
+        int low = upOffsets[from];
+        int high = upOffsets[from + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (upTargets[mid] < to) {
+                low = mid + 1;
+            } else if (upTargets[mid] > to) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private final class Builder {
+        private final int nodeCount;
+        private final int[][] neighbours;
+        private final long[][] weights;
+        private final int[][] middles;
+        private final int[] degrees;
+        private final int[] rank;
+        private final int[] contractedNeighbours;
+        private final boolean[] contracted;
+        private final SearchContext witness = new SearchContext();
+        private int shortcuts;
+
+        Builder(CompactGraph<T> base) {
+            nodeCount = base.nodeCount();
+            neighbours = new int[nodeCount][];
+            weights = new long[nodeCount][];
+            middles = new int[nodeCount][];
+            degrees = new int[nodeCount];
+            rank = new int[nodeCount];
+            contractedNeighbours = new int[nodeCount];
+            contracted = new boolean[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                int degree = base.arcEnd(node) - base.arcBegin(node);
+                neighbours[node] = new int[Math.max(degree, 4)];
+                weights[node] = new long[Math.max(degree, 4)];
+                middles[node] = new int[Math.max(degree, 4)];
+                for (int arc = base.arcBegin(node); arc < base.arcEnd(node); arc++) {
+                    int i = degrees[node]++;
+                    neighbours[node][i] = base.arcTarget(arc);
+                    weights[node][i] = base.arcWeight(arc);
+                    middles[node][i] = -1;
+                }
+            }
+        }
+
+        void contract() {
+            IndexedHeap order = new IndexedHeap(nodeCount);
+            order.ensureCapacity(nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                order.push(node, priority(node));
+            }
+            int next = 0;
+            while (!order.isEmpty()) {
+                int node = order.poll();
+                // Lazy update: priorities go stale as neighbours are contracted.
+                int current = priority(node);
+                if (!order.isEmpty() && current > order.peekKey()) {
+                    order.push(node, current);
+                    continue;
+                }
+                contractNode(node, true);
+                contracted[node] = true;
+                rank[node] = next++;
+                for (int i = 0; i < degrees[node]; i++) {
+                    int neighbour = neighbours[node][i];
+                    if (!contracted[neighbour]) {
+                        contractedNeighbours[neighbour]++;
+                        order.update(neighbour, priority(neighbour));
+                    }
+                }
+            }
+            buildUpwardGraph();
+        }
+
+        private int priority(int node) {
+            int degree = 0;
+            for (int i = 0; i < degrees[node]; i++) {
+                if (!contracted[neighbours[node][i]]) {
+                    degree++;
+                }
+            }
+            return 2 * contractNode(node, false) - degree + contractedNeighbours[node];
+        }
+
+        private int contractNode(int node, boolean apply) {
+            int added = 0;
+            int count = degrees[node];
+            long maxWeight = 0;
+            for (int i = 0; i < count; i++) {
+                if (!contracted[neighbours[node][i]]) {
+                    maxWeight = Math.max(maxWeight, weights[node][i]);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                int from = neighbours[node][i];
+                if (contracted[from]) {
+                    continue;
+                }
+                long toFrom = weights[node][i];
+                witnessSearch(from, node, toFrom + maxWeight);
+                for (int j = i + 1; j < count; j++) {
+                    int to = neighbours[node][j];
+                    if (contracted[to]) {
+                        continue;
+                    }
+                    long viaNode = toFrom + weights[node][j];
+                    if (witness.distance(to) > viaNode) {
+                        added++;
+                        if (apply) {
+                            addShortcut(from, to, viaNode, node);
+                        }
+                    }
+                }
+            }
+            return added;
+        }
+
+        private void witnessSearch(int source, int excluded, long limit) {
+            witness.reset(nodeCount);
+            IndexedHeap queue = witness.heap();
+            witness.reach(source, 0, -1, null);
+            queue.push(source, 0);
+            int settled = 0;
+            while (!queue.isEmpty() && settled++ < WITNESS_SETTLE_LIMIT) {
+                int current = queue.poll();
+                long distance = witness.distance(current);
+                if (distance > limit) {
+                    break;
+                }
+                for (int i = 0; i < degrees[current]; i++) {
+                    int next = neighbours[current][i];
+                    if (next == excluded || contracted[next]) {
+                        continue;
+                    }
+                    long newDistance = distance + weights[current][i];
+                    if (newDistance < witness.distance(next)) {
+                        witness.reach(next, newDistance, current, null);
+                        queue.pushOrDecrease(next, newDistance);
+                    }
+                }
+            }
+        }
+
+        private void addShortcut(int a, int b, long weight, int middle) {
+            if (link(a, b, weight, middle)) {
+                shortcuts++;
+            }
+            link(b, a, weight, middle);
+        }
+
+        private boolean link(int from, int to, long weight, int middle) {
+            for (int i = 0; i < degrees[from]; i++) {
+                if (neighbours[from][i] == to) {
+                    if (weight < weights[from][i]) {
+                        weights[from][i] = weight;
+                        middles[from][i] = middle;
+                    }
+                    return false;
+                }
+            }
+            int i = degrees[from]++;
+            if (i == neighbours[from].length) {
+                neighbours[from] = Arrays.copyOf(neighbours[from], i * 2);
+                weights[from] = Arrays.copyOf(weights[from], i * 2);
+                middles[from] = Arrays.copyOf(middles[from], i * 2);
+            }
+            neighbours[from][i] = to;
+            weights[from][i] = weight;
+            middles[from][i] = middle;
+            return true;
+        }
+
+        private void buildUpwardGraph() {
+            int[] offsets = new int[nodeCount + 1];
+            for (int node = 0; node < nodeCount; node++) {
+                int up = 0;
+                for (int i = 0; i < degrees[node]; i++) {
+                    if (rank[neighbours[node][i]] > rank[node]) {
+                        up++;
+                    }
+                }
+                offsets[node + 1] = offsets[node] + up;
+            }
+            int[] targets = new int[offsets[nodeCount]];
+            long[] arcWeights = new long[targets.length];
+            int[] arcMiddles = new int[targets.length];
+            long[] scratch = new long[0];
+            for (int node = 0; node < nodeCount; node++) {
+                int up = 0;
+                if (scratch.length < degrees[node]) {
+                    scratch = new long[degrees[node]];
+                }
+                for (int i = 0; i < degrees[node]; i++) {
+                    if (rank[neighbours[node][i]] > rank[node]) {
+                        scratch[up++] = ((long) neighbours[node][i] << 32) | i;
+                    }
+                }
+                // Sorted by target so unpacking can binary search for an arc.
+                Arrays.sort(scratch, 0, up);
+                for (int k = 0; k < up; k++) {
+                    int i = (int) scratch[k];
+                    int arc = offsets[node] + k;
+                    targets[arc] = neighbours[node][i];
+                    arcWeights[arc] = weights[node][i];
+                    arcMiddles[arc] = middles[node][i];
+                }
+            }
+            upOffsets = offsets;
+            upTargets = targets;
+            upWeights = arcWeights;
+            upMiddles = arcMiddles;
+            shortcutCount = shortcuts;
+        }
+    }
+}
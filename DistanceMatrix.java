@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class DistanceMatrix<T> {
+    public static final int UNREACHABLE = -1;
+
+    private final List<T> sources;
+    private final List<T> targets;
+    private final long[] distances;
+
+    public interface RowSearch<T> {
+        long[] distances(T from, List<T> targets);
+    }
+
+    private DistanceMatrix(List<T> sources, List<T> targets, long[] distances) {
+        this.sources = sources;
+        this.targets = targets;
+        this.distances = distances;
+    }
+
+    public static <T> DistanceMatrix<T> compute(List<T> sources, List<T> targets, ForkJoinPool pool,
+                                                RowSearch<T> search) {
+        List<T> rows = Collections.unmodifiableList(new ArrayList<>(sources));
+        List<T> columns = Collections.unmodifiableList(new ArrayList<>(targets));
+        int cells;
+        try {
+            cells = Math.multiplyExact(rows.size(), columns.size());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "Distance matrix of " + rows.size() + " x " + columns.size() + " cells is too large", e);
+        }
+        long[] distances = new long[cells];
+        pool.invoke(new RowTask<>(rows, columns, distances, search, 0, rows.size()));
+        return new DistanceMatrix<>(rows, columns, distances);
+    }
+
+    public int getRowCount() {
+        return sources.size();
+    }
+
+    public int getColumnCount() {
+        return targets.size();
+    }
+
+    public List<T> getSources() {
+        return sources;
+    }
+
+    public List<T> getTargets() {
+        return targets;
+    }
+
+    public long getDistance(int row, int column) {
+        if (column < 0 || column >= targets.size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        return distances[row * targets.size() + column];
+    }
+
+    public long[] getRow(int row) {
+        long[] copy = new long[targets.size()];
+        System.arraycopy(distances, row * targets.size(), copy, 0, copy.length);
+        return copy;
+    }
+
+    private static final class RowTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> sources;
+        private final List<T> targets;
+        private final long[] distances;
+        private final RowSearch<T> search;
+        private final int from;
+        private final int to;
+
+        RowTask(List<T> sources, List<T> targets, long[] distances, RowSearch<T> search, int from, int to) {
+            this.sources = sources;
+            this.targets = targets;
+            this.distances = distances;
+            this.search = search;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask<>(sources, targets, distances, search, from, middle),
+                        new RowTask<>(sources, targets, distances, search, middle, to));
+                return;
+            }
+            for (int row = from; row < to; row++) {
+                long[] result = search.distances(sources.get(row), targets);
+                System.arraycopy(result, 0, distances, row * targets.size(), targets.size());
+            }
+        }
+    }
+}
@@ -1,6 +1,11 @@
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 public class Edge<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final T from;
     private final T to;
     private int weight;
@@ -32,6 +37,13 @@ public class Edge<T> implements Serializable {
         this.weight = weight;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (weight < 0) {
+            throw new InvalidObjectException("Vikten kan inte vara negativ");
+        }
+    }
+
     public String getName() {
         return this.name;
     }
@@ -39,4 +51,4 @@ public class Edge<T> implements Serializable {
     public String toString() {
         return String.format("till %s med %s -> %s tar %d", to.toString(), from.toString(), to.toString(), weight);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,6 +1,10 @@
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 public interface Graph<T> {
 
@@ -23,4 +27,64 @@ public interface Graph<T> {
     boolean pathExists(T from, T to);
     
     List<Edge<T>> getPath(T from, T to);
-}
\ No newline at end of file
+
+    interface NeighbourVisitor<T> {
+        void visit(T neighbour, int weight);
+    }
+
+    // Read-only views over the live graph; getNodes and getEdgesFrom stay the copying snapshots.
+    default Set<T> nodeView() {
+        return Collections.unmodifiableSet(getNodes());
+    }
+
+    default Collection<Edge<T>> edgeViewFrom(T node) {
+        return Collections.unmodifiableCollection(getEdgesFrom(node));
+    }
+
+    default void forEachEdgeFrom(T node, Consumer<? super Edge<T>> action) {
+        edgeViewFrom(node).forEach(action);
+    }
+
+    default void forEachNeighbour(T node, NeighbourVisitor<? super T> visitor) {
+        for (Edge<T> edge : edgeViewFrom(node)) {
+            visitor.visit(edge.getDestination(), edge.getWeight());
+        }
+    }
+
+    default long[] getDistances(T from, List<T> targets) {
+        long[] distances = new long[targets.size()];
+        for (int i = 0; i < distances.length; i++) {
+            T to = targets.get(i);
+            if (from.equals(to)) {
+                distances[i] = pathExists(from, to) ? 0 : DistanceMatrix.UNREACHABLE;
+                continue;
+            }
+            List<Edge<T>> path = getPath(from, to);
+            long total = DistanceMatrix.UNREACHABLE;
+            if (path != null) {
+                total = 0;
+                for (Edge<T> edge : path) {
+                    total += edge.getWeight();
+                }
+            }
+            distances[i] = total;
+        }
+        return distances;
+    }
+
+    default List<List<Edge<T>>> getPaths(T from, List<T> targets) {
+        List<List<Edge<T>>> paths = new ArrayList<>(targets.size());
+        for (T to : targets) {
+            paths.add(getPath(from, to));
+        }
+        return paths;
+    }
+
+    default DistanceMatrix<T> getDistanceMatrix(List<T> sources, List<T> targets) {
+        return getDistanceMatrix(sources, targets, ForkJoinPool.commonPool());
+    }
+
+    default DistanceMatrix<T> getDistanceMatrix(List<T> sources, List<T> targets, ForkJoinPool pool) {
+        return DistanceMatrix.compute(sources, targets, pool, this::getDistances);
+    }
+}
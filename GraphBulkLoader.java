@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class GraphBulkLoader {
+    private static final int MIN_CHUNK_BYTES = 1 << 16;
+
+    private GraphBulkLoader() {
+    }
+
+    public static <N> Result<N> load(Path path, GraphFileParser.PlaceBuilder<N> builder, ForkJoinPool pool)
+            throws IOException {
+        long start = System.nanoTime();
+        List<N> placeNodes = new ArrayList<>();
+        List<Chunk> chunks = new ArrayList<>();
+        // Deduplication runs as a few tasks per worker, each owning a slice of the key space.
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(pool.getParallelism(), 1) - 1) + 2;
+        long bytes;
+        try (FileChannel file = FileChannel.open(path)) {
+            bytes = file.size();
+            if (bytes > Integer.MAX_VALUE) {
+                // Too large for one mapping: the edges are read sequentially but still deduplicated in bulk.
+                GraphFileParser parser = new GraphFileParser(file);
+                Chunk chunk = new Chunk(parser, bits);
+                if (parser.parseHeader(builder, placeNodes) != GraphFileParser.EOF) {
+                    chunk.parse();
+                }
+                chunks.add(chunk);
+            } else {
+                GraphFileParser parser = new GraphFileParser(file.map(FileChannel.MapMode.READ_ONLY, 0, bytes));
+                if (parser.parseHeader(builder, placeNodes) != GraphFileParser.EOF) {
+                    split(parser, (int) bytes, pool.getParallelism(), bits, chunks);
+                    parseAll(chunks, pool);
+                }
+            }
+        }
+
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.size;
+        }
+        boolean[][] keep = deduplicate(chunks, 1 << bits, pool);
+
+        Result<N> result = new Result<>(total);
+        Map<String, String> canonicalNames = new HashMap<>();
+        int skippedLines = 0;
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            skippedLines += chunk.skippedLines;
+            for (int i = 0; i < chunk.size; i++) {
+                if (keep[c][i]) {
+                    String name = chunk.names[i];
+                    String canonical = canonicalNames.putIfAbsent(name, name);
+                    result.add(placeNodes.get(chunk.from[i]), placeNodes.get(chunk.to[i]),
+                            canonical == null ? name : canonical, chunk.weights[i]);
+                } else {
+                    result.duplicates++;
+                }
+            }
+        }
+        result.report = new GraphFileParser.Report(placeNodes.size(), result.size(), skippedLines, bytes,
+                System.nanoTime() - start);
+        return result;
+    }
+
+    private static void split(GraphFileParser parser, int limit, int parallelism, int bits, List<Chunk> chunks) {
+        int begin = parser.position();
+        int chunkBytes = Math.max(MIN_CHUNK_BYTES, (limit - begin) / (parallelism * 4) + 1);
+        while (begin < limit) {
+            int end = begin + chunkBytes >= limit ? limit : parser.lineStartAfter(begin + chunkBytes);
+            chunks.add(new Chunk(parser.chunk(begin, end), bits));
+            begin = end;
+        }
+    }
+
+    private static void parseAll(List<Chunk> chunks, ForkJoinPool pool) throws IOException {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            tasks.add(pool.submit(() -> {
+                chunk.parse();
+                return null;
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                // Checked exceptions come back wrapped, possibly twice when rethrown on another thread.
+                for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static boolean[][] deduplicate(List<Chunk> chunks, int partitions, ForkJoinPool pool) {
+        boolean[][] keep = new boolean[chunks.size()][];
+        for (int c = 0; c < keep.length; c++) {
+            keep[c] = new boolean[chunks.get(c).size];
+        }
+        // Each partition reads only its own bucket of every chunk, in file order, so the first line for a
+        // pair of places wins no matter how the work is scheduled.
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            tasks.add(pool.submit(() -> {
+                int expected = 0;
+                for (Chunk chunk : chunks) {
+                    expected += chunk.bucketStarts[partition + 1] - chunk.bucketStarts[partition];
+                }
+                PairSet seen = new PairSet(expected);
+                for (int c = 0; c < keep.length; c++) {
+                    Chunk chunk = chunks.get(c);
+                    for (int j = chunk.bucketStarts[partition]; j < chunk.bucketStarts[partition + 1]; j++) {
+                        long key = chunk.bucketKeys[j];
+                        if (seen.add(key, PairSet.mix(key))) {
+                            keep[c][chunk.bucketLines[j]] = true;
+                        }
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return keep;
+    }
+
+    private static long pairKey(int place1, int place2) {
+        return ((long) Math.min(place1, place2) << 32) | Math.max(place1, place2);
+    }
+
+    private static final class Chunk implements GraphFileParser.ConnectionSink {
+        private final GraphFileParser parser;
+        private final int bits;
+        private int[] from = new int[64];
+        private int[] to = new int[64];
+        private int[] weights = new int[64];
+        private String[] names = new String[64];
+        private int size;
+        private int skippedLines;
+        private int[] bucketStarts;
+        private long[] bucketKeys = new long[0];
+        private int[] bucketLines = new int[0];
+
+        Chunk(GraphFileParser parser, int bits) {
+            this.parser = parser;
+            this.bits = bits;
+            bucketStarts = new int[(1 << bits) + 1];
+        }
+
+        void parse() throws IOException {
+            skippedLines = parser.parseConnections(this);
+            bucket();
+        }
+
+        // A stable counting sort by partition, done on the parsing thread, so deduplication stays O(lines).
+        private void bucket() {
+            int[] partitions = new int[size];
+            bucketStarts = new int[(1 << bits) + 1];
+            for (int i = 0; i < size; i++) {
+                partitions[i] = (int) (PairSet.mix(pairKey(from[i], to[i])) >>> (64 - bits));
+                bucketStarts[partitions[i] + 1]++;
+            }
+            for (int p = 1; p < bucketStarts.length; p++) {
+                bucketStarts[p] += bucketStarts[p - 1];
+            }
+            int[] next = Arrays.copyOf(bucketStarts, bucketStarts.length - 1);
+            bucketKeys = new long[size];
+            bucketLines = new int[size];
+            for (int i = 0; i < size; i++) {
+                int slot = next[partitions[i]]++;
+                bucketKeys[slot] = pairKey(from[i], to[i]);
+                bucketLines[slot] = i;
+            }
+        }
+
+        @Override
+        public void connection(int place1, int place2, String name, int weight) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            from[size] = place1;
+            to[size] = place2;
+            weights[size] = weight;
+            names[size] = name;
+            size++;
+        }
+    }
+
+    private static final class PairSet {
+        private static final long EMPTY = -1;
+
+        private long[] keys;
+        private int size;
+
+        PairSet(int expected) {
+            keys = new long[Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        static long mix(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            key *= 0xc4ceb9fe1a85ec53L;
+            return key ^ (key >>> 33);
+        }
+
+        boolean add(long key, long mixed) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            for (int slot = (int) mixed & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == EMPTY) {
+                    keys[slot] = key;
+                    size++;
+                    return true;
+                }
+                if (keys[slot] == key) {
+                    return false;
+                }
+            }
+        }
+
+        private void grow() {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            Arrays.fill(keys, EMPTY);
+            int mask = keys.length - 1;
+            for (long key : old) {
+                if (key != EMPTY) {
+                    int slot = (int) mix(key) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = key;
+                }
+            }
+        }
+    }
+
+    public static final class Result<N> {
+        private final List<N> from;
+        private final List<N> to;
+        private final List<String> names;
+        private int[] weights;
+        private int duplicates;
+        private GraphFileParser.Report report;
+
+        Result(int capacity) {
+            from = new ArrayList<>(capacity);
+            to = new ArrayList<>(capacity);
+            names = new ArrayList<>(capacity);
+            weights = new int[capacity];
+        }
+
+        private void add(N place1, N place2, String name, int weight) {
+            weights[from.size()] = weight;
+            from.add(place1);
+            to.add(place2);
+            names.add(name);
+        }
+
+        public void connectTo(ListGraph<N> graph) {
+            graph.connectAll(from, to, names, Arrays.copyOf(weights, from.size()));
+        }
+
+        public int size() {
+            return from.size();
+        }
+
+        public N getFrom(int i) {
+            return from.get(i);
+        }
+
+        public N getTo(int i) {
+            return to.get(i);
+        }
+
+        public String getName(int i) {
+            return names.get(i);
+        }
+
+        public int getWeight(int i) {
+            return weights[i];
+        }
+
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        public GraphFileParser.Report getReport() {
+            return report;
+        }
+    }
+}
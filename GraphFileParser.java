@@ -0,0 +1,451 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class GraphFileParser {
+    static final int EOF = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private byte[] field = new byte[64];
+    private int fieldStart;
+    private int fieldEnd;
+    private int line = 1;
+    private int fieldLine;
+    private int fieldPosition;
+    private long bytesRead;
+    private NameTable<Integer> places;
+
+    public interface PlaceBuilder<N> {
+        void background(String location);
+
+        N place(String name, double x, double y);
+    }
+
+    public interface Builder<N> extends PlaceBuilder<N> {
+        void connection(N from, N to, String name, int weight);
+    }
+
+    interface ConnectionSink {
+        void connection(int from, int to, String name, int weight);
+    }
+
+    public GraphFileParser(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+    }
+
+    public GraphFileParser(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    public static <N> Report load(Path path, Builder<N> builder) throws IOException {
+        try (FileChannel file = FileChannel.open(path)) {
+            if (file.size() <= Integer.MAX_VALUE) {
+                return new GraphFileParser(file.map(FileChannel.MapMode.READ_ONLY, 0, file.size())).parse(builder);
+            }
+            return new GraphFileParser(file).parse(builder);
+        }
+    }
+
+    public <N> Report parse(Builder<N> builder) throws IOException {
+        long start = System.nanoTime();
+        List<N> placeNodes = new ArrayList<>();
+        int end = parseHeader(builder, placeNodes);
+        int[] connectionCount = new int[1];
+        int skippedLines = 0;
+        if (end != EOF) {
+            skippedLines = parseConnections((from, to, name, weight) -> {
+                builder.connection(placeNodes.get(from), placeNodes.get(to), name, weight);
+                connectionCount[0]++;
+            });
+        }
+        return new Report(placeNodes.size(), connectionCount[0], skippedLines, bytesRead, System.nanoTime() - start);
+    }
+
+    <N> int parseHeader(PlaceBuilder<N> builder, List<N> placeNodes) throws IOException {
+        places = new NameTable<>();
+        int end = read(false);
+        if (bytesRead == 0) {
+            return EOF;
+        }
+        builder.background(fieldText());
+
+        // Places are one line of name;x;y triples, so each name must be kept until its coordinates are read.
+        boolean morePlaces = end == '\n';
+        while (morePlaces) {
+            end = readField();
+            if (fieldStart == fieldEnd && end != ';') {
+                break;
+            }
+            byte[] key = Arrays.copyOfRange(field, fieldStart, fieldEnd);
+            String name = new String(key, StandardCharsets.UTF_8);
+            if (end != ';') {
+                throw malformed("coordinates missing for " + name);
+            }
+            end = readField();
+            double x = parseDouble();
+            if (end != ';') {
+                throw malformed("y coordinate missing for " + name);
+            }
+            end = readField();
+            double y = parseDouble();
+            places.put(key, placeNodes.size());
+            placeNodes.add(builder.place(name, x, y));
+            morePlaces = end == ';';
+        }
+        return end;
+    }
+
+    GraphFileParser chunk(int from, int to) {
+        GraphFileParser chunk = new GraphFileParser(buffer.duplicate().limit(to).position(from));
+        chunk.places = places;
+        return chunk;
+    }
+
+    int position() {
+        return buffer.position();
+    }
+
+    int lineStartAfter(int position) {
+        int limit = buffer.limit();
+        while (position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        return Math.min(position + 1, limit);
+    }
+
+    int parseConnections(ConnectionSink sink) throws IOException {
+        NameTable<String> names = new NameTable<>();
+        int skippedLines = 0;
+        int end = '\n';
+        while (end != EOF) {
+            end = readField();
+            if (end == EOF && fieldStart == fieldEnd) {
+                break;
+            }
+            Integer from = places.get(field, fieldStart, fieldEnd);
+            Integer to = null;
+            String name = null;
+            int fields = 1;
+            if (end == ';') {
+                end = readField();
+                to = places.get(field, fieldStart, fieldEnd);
+                fields++;
+            }
+            if (end == ';') {
+                end = readField();
+                name = names.get(field, fieldStart, fieldEnd);
+                if (name == null) {
+                    name = new String(field, fieldStart, fieldEnd - fieldStart, StandardCharsets.UTF_8);
+                    names.put(Arrays.copyOfRange(field, fieldStart, fieldEnd), name);
+                }
+                fields++;
+            }
+            int weight = 0;
+            if (end == ';') {
+                end = readField();
+                if (fieldStart < fieldEnd || end == ';') {
+                    fields++;
+                    if (from != null && to != null) {
+                        weight = parseInt();
+                    }
+                }
+            }
+            while (end == ';') {
+                end = readField();
+            }
+            // A road from a place to itself is not a connection the graph can hold, so it is skipped like a bad line.
+            if (fields < 4 || from == null || to == null || from.equals(to)) {
+                skippedLines++;
+                continue;
+            }
+            sink.connection(from, to, name, weight);
+        }
+        return skippedLines;
+    }
+
+    private int readField() throws IOException {
+        return read(true);
+    }
+
+    private int read(boolean splitFields) throws IOException {
+        fieldLine = line;
+        fieldPosition = buffer.position();
+        int length = 0;
+        int next;
+        while ((next = nextByte()) != EOF && next != '\n' && !(splitFields && next == ';')) {
+            if (length == field.length) {
+                field = Arrays.copyOf(field, length * 2);
+            }
+            field[length++] = (byte) next;
+        }
+        if (next == '\n') {
+            line++;
+        }
+        // Trimming by byte is safe for UTF-8: every byte of a multi-byte character is above 0x7F.
+        int start = 0;
+        while (start < length && (field[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (length > start && (field[length - 1] & 0xFF) <= ' ') {
+            length--;
+        }
+        fieldStart = start;
+        fieldEnd = length;
+        return next;
+    }
+
+    private int nextByte() throws IOException {
+        if (!buffer.hasRemaining()) {
+            if (channel == null) {
+                return EOF;
+            }
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            if (read < 0) {
+                return EOF;
+            }
+        }
+        bytesRead++;
+        return buffer.get() & 0xFF;
+    }
+
+    private int parseInt() throws IOException {
+        int i = fieldStart;
+        boolean negative = i < fieldEnd && field[i] == '-';
+        if (i < fieldEnd && (field[i] == '-' || field[i] == '+')) {
+            i++;
+        }
+        if (i == fieldEnd) {
+            throw malformed("missing number");
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = field[i] - '0';
+            if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                throw malformed("bad integer " + fieldText());
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw malformed("bad integer " + fieldText());
+        }
+        return (int) value;
+    }
+
+    private double parseDouble() throws IOException {
+        int i = fieldStart;
+        boolean negative = i < fieldEnd && field[i] == '-';
+        if (i < fieldEnd && (field[i] == '-' || field[i] == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < fieldEnd; i++) {
+            byte next = field[i];
+            if (next == '.' && !point) {
+                point = true;
+                continue;
+            }
+            int digit = next - '0';
+            if (digit < 0 || digit > 9 || digits == 15) {
+                return slowDouble();
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (point) {
+                scale++;
+            }
+        }
+        if (digits == 0) {
+            return slowDouble();
+        }
+        // Both operands are exact doubles, so the division rounds exactly like Double.parseDouble.
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private double slowDouble() throws IOException {
+        double value;
+        try {
+            value = Double.parseDouble(fieldText());
+        } catch (NumberFormatException e) {
+            throw malformed("bad number " + fieldText());
+        }
+        // Double.parseDouble accepts NaN and Infinity, which no place can stand at.
+        if (!Double.isFinite(value)) {
+            throw malformed("bad number " + fieldText());
+        }
+        return value;
+    }
+
+    private String fieldText() {
+        return new String(field, fieldStart, fieldEnd - fieldStart, StandardCharsets.UTF_8);
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("Line " + fieldLine() + ": " + message);
+    }
+
+    private int fieldLine() {
+        if (channel != null) {
+            return fieldLine;
+        }
+        // A chunk of a mapped file starts mid-file, so its line is counted from the start on the error path only.
+        int lines = 1;
+        for (int i = 0; i < fieldPosition; i++) {
+            if (buffer.get(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static final class NameTable<V> {
+        private byte[][] keys = new byte[64][];
+        private int[] hashes = new int[64];
+        private Object[] values = new Object[64];
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        V get(byte[] bytes, int from, int to) {
+            int hash = hash(bytes, from, to);
+            int mask = keys.length - 1;
+            for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && Arrays.equals(keys[slot], 0, keys[slot].length, bytes, from, to)) {
+                    return (V) values[slot];
+                }
+            }
+            return null;
+        }
+
+        void put(byte[] key, V value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int hash = hash(key, 0, key.length);
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while (keys[slot] != null) {
+                if (hashes[slot] == hash && Arrays.equals(keys[slot], key)) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            hashes[slot] = hash;
+            values[slot] = value;
+            size++;
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            int[] oldHashes = hashes;
+            Object[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            hashes = new int[keys.length];
+            values = new Object[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = oldHashes[i] & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    hashes[slot] = oldHashes[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    public static final class Report {
+        private final int placeCount;
+        private final int connectionCount;
+        private final int skippedLines;
+        private final long bytes;
+        private final long loadNanos;
+        private final long peakHeapBytes;
+
+        Report(int placeCount, int connectionCount, int skippedLines, long bytes, long loadNanos) {
+            this(placeCount, connectionCount, skippedLines, bytes, loadNanos, -1);
+        }
+
+        private Report(int placeCount, int connectionCount, int skippedLines, long bytes, long loadNanos,
+                       long peakHeapBytes) {
+            this.placeCount = placeCount;
+            this.connectionCount = connectionCount;
+            this.skippedLines = skippedLines;
+            this.bytes = bytes;
+            this.loadNanos = loadNanos;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        // The parser never touches the JVM's memory pools; the caller measures the peak and attaches it here.
+        public Report withPeakHeapBytes(long peakHeapBytes) {
+            return new Report(placeCount, connectionCount, skippedLines, bytes, loadNanos, peakHeapBytes);
+        }
+
+        public int getPlaceCount() {
+            return placeCount;
+        }
+
+        public int getConnectionCount() {
+            return connectionCount;
+        }
+
+        public int getSkippedLines() {
+            return skippedLines;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getLoadNanos() {
+            return loadNanos;
+        }
+
+        // -1 when the caller did not measure it.
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        @Override
+        public String toString() {
+            String peak = peakHeapBytes < 0 ? "" : String.format(", peakHeap=%dKB", peakHeapBytes >> 10);
+            return String.format("GraphFile[places=%d, connections=%d, skipped=%d, bytes=%d, load=%.1fms%s]",
+                    placeCount, connectionCount, skippedLines, bytes, loadNanos / 1e6, peak);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+public class GraphJournal implements Closeable {
+    public interface Replay {
+        void background(String file);
+
+        void place(String name, double x, double y);
+
+        void connection(String from, String to, String name, int weight);
+
+        void disconnection(String from, String to);
+
+        void weight(String from, String to, int weight);
+
+        void removal(String name);
+    }
+
+    public interface BaseWriter {
+        void write(Writer out) throws IOException;
+    }
+
+    private static final String SUFFIX = ".journal";
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private final Path base;
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final CRC32C crc = new CRC32C();
+    private int pendingRecords;
+    private long records;
+
+    private GraphJournal(Path base, FileChannel channel, long records) {
+        this.base = base;
+        this.path = journalPath(base);
+        this.channel = channel;
+        this.records = records;
+    }
+
+    public static Path journalPath(Path base) {
+        return base.resolveSibling(base.getFileName() + SUFFIX);
+    }
+
+    public static GraphJournal create(Path base) throws IOException {
+        FileChannel channel = FileChannel.open(journalPath(base), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.force(false);
+        return new GraphJournal(base, channel, 0);
+    }
+
+    public static GraphJournal open(Path base, Replay replay) throws IOException {
+        FileChannel channel = FileChannel.open(journalPath(base), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long[] valid = replay(journalPath(base), channel, replay);
+            if (valid[0] < channel.size()) {
+                // A record cut short by a crash was never acknowledged as saved, so it is dropped.
+                channel.truncate(valid[0]);
+                channel.force(false);
+            }
+            channel.position(valid[0]);
+            return new GraphJournal(base, channel, valid[1]);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long[] replay(Path path, FileChannel channel, Replay replay) throws IOException {
+        long valid = 0;
+        long records = 0;
+        long line = 0;
+        CRC32C crc = new CRC32C();
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16);
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        long offset = 0;
+        int next;
+        while ((next = in.read()) != -1) {
+            offset++;
+            if (next != '\n') {
+                record.write(next);
+                continue;
+            }
+            line++;
+            byte[] bytes = record.toByteArray();
+            record.reset();
+            int separator = indexOf(bytes, (byte) ';');
+            crc.reset();
+            crc.update(bytes, separator + 1, bytes.length - separator - 1);
+            if (separator != 8 || !Long.toHexString(crc.getValue() | 1L << 32).substring(1)
+                    .equals(new String(bytes, 0, 8, StandardCharsets.US_ASCII))) {
+                if (in.read() == -1) {
+                    break;
+                }
+                throw new IOException("Journal " + path + " is corrupt at line " + line);
+            }
+            apply(new String(bytes, separator + 1, bytes.length - separator - 1, StandardCharsets.UTF_8), line, replay);
+            valid = offset;
+            records++;
+        }
+        return new long[]{valid, records};
+    }
+
+    private static int indexOf(byte[] bytes, byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void apply(String record, long line, Replay replay) throws IOException {
+        String[] fields = record.split(";", -1);
+        try {
+            switch (fields[0]) {
+                case "B":
+                    replay.background(record.substring(2));
+                    return;
+                case "P":
+                    replay.place(fields[1], coordinate(fields[2]), coordinate(fields[3]));
+                    return;
+                case "C":
+                    replay.connection(fields[1], fields[2], fields[3], Integer.parseInt(fields[4]));
+                    return;
+                case "D":
+                    replay.disconnection(fields[1], fields[2]);
+                    return;
+                case "W":
+                    replay.weight(fields[1], fields[2], Integer.parseInt(fields[3]));
+                    return;
+                case "R":
+                    replay.removal(fields[1]);
+                    return;
+                default:
+                    throw new IOException("Unknown journal record " + fields[0] + " at line " + line);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IOException("Malformed journal record at line " + line, e);
+        }
+    }
+
+    private static double coordinate(String field) {
+        double value = Double.parseDouble(field);
+        if (!Double.isFinite(value)) {
+            throw new NumberFormatException(field);
+        }
+        return value;
+    }
+
+    public void background(String file) {
+        append("B;" + field(file, "\n"));
+    }
+
+    public void place(String name, double x, double y) {
+        if (!Double.isFinite(x) || !Double.isFinite(y)) {
+            throw new IllegalArgumentException("Journal coordinates must be finite: " + x + ";" + y);
+        }
+        append("P;" + field(name) + ";" + x + ";" + y);
+    }
+
+    public void connection(String from, String to, String name, int weight) {
+        append("C;" + field(from) + ";" + field(to) + ";" + field(name) + ";" + weight);
+    }
+
+    public void disconnection(String from, String to) {
+        append("D;" + field(from) + ";" + field(to));
+    }
+
+    public void weight(String from, String to, int weight) {
+        append("W;" + field(from) + ";" + field(to) + ";" + weight);
+    }
+
+    public void removal(String name) {
+        append("R;" + field(name));
+    }
+
+    private static String field(String value) {
+        return field(value, ";\n");
+    }
+
+    private static String field(String value, String forbidden) {
+        for (int i = 0; i < forbidden.length(); i++) {
+            if (value.indexOf(forbidden.charAt(i)) >= 0) {
+                throw new IllegalArgumentException("Journal field contains a separator: " + value);
+            }
+        }
+        return value;
+    }
+
+    private void append(String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        crc.reset();
+        crc.update(bytes);
+        pending.writeBytes(Long.toHexString(crc.getValue() | 1L << 32).substring(1).getBytes(StandardCharsets.US_ASCII));
+        pending.write(';');
+        pending.writeBytes(bytes);
+        pending.write('\n');
+        pendingRecords++;
+    }
+
+    public int commit() throws IOException {
+        if (pendingRecords == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            channel.truncate(start);
+            channel.position(start);
+            throw e;
+        }
+        int committed = pendingRecords;
+        records += committed;
+        discard();
+        return committed;
+    }
+
+    public void discard() {
+        pending.reset();
+        pendingRecords = 0;
+    }
+
+    public boolean needsCompaction() throws IOException {
+        long journalBytes = channel.size() + pending.size();
+        return journalBytes > MIN_COMPACTION_BYTES && journalBytes > Files.size(base) / 2;
+    }
+
+    public void compact(BaseWriter writer) throws IOException {
+        Path temporary = base.resolveSibling(base.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer text = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            writer.write(text);
+            text.flush();
+            out.force(true);
+        }
+        Files.move(temporary, base, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // A crash before the truncate replays records the new base already contains; replay is
+        // expected to treat places and connections that already exist as updates.
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(false);
+        records = 0;
+        discard();
+    }
+
+    public Path getBase() {
+        return base;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    public int getPendingCount() {
+        return pendingRecords;
+    }
+
+    public long getJournalBytes() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        discard();
+        channel.close();
+    }
+}
@@ -0,0 +1,30 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+// Heap high-water marks are JVM-wide, so only the application that owns the JVM should reset them.
+final class HeapPeak {
+    private HeapPeak() {
+    }
+
+    static void reset() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // Pools peak at different moments, so the sum is an upper bound on the heap in use at any one time.
+    static long bytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP && pool.isValid() ? pool.getPeakUsage() : null;
+            if (usage != null) {
+                peak += usage.getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+public class IndexedHeap {
+    private static final int ARITY = 4;
+
+    private int[] items;
+    private long[] keys;
+    private int[] positions;
+    private int size;
+
+    public IndexedHeap(int capacity) {
+        items = new int[Math.max(capacity, 16)];
+        keys = new long[items.length];
+        positions = new int[Math.max(capacity, 16)];
+        Arrays.fill(positions, -1);
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (positions.length < capacity) {
+            int oldLength = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(capacity, oldLength + (oldLength >> 1)));
+            Arrays.fill(positions, oldLength, positions.length, -1);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int item) {
+        return positions[item] >= 0;
+    }
+
+    public long key(int item) {
+        int position = positions[item];
+        if (position < 0) {
+            throw new NoSuchElementException();
+        }
+        return keys[position];
+    }
+
+    public long peekKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return keys[0];
+    }
+
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return items[0];
+    }
+
+    public void push(int item, long key) {
+        if (positions[item] >= 0) {
+            throw new IllegalStateException();
+        }
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        siftUp(size++, item, key);
+    }
+
+    public void decreaseKey(int item, long key) {
+        int position = positions[item];
+        if (position < 0) {
+            throw new NoSuchElementException();
+        }
+        if (key > keys[position]) {
+            throw new IllegalArgumentException();
+        }
+        siftUp(position, item, key);
+    }
+
+    public void pushOrDecrease(int item, long key) {
+        int position = positions[item];
+        if (position < 0) {
+            push(item, key);
+        } else if (key < keys[position]) {
+            siftUp(position, item, key);
+        }
+    }
+
+    public void update(int item, long key) {
+        int position = positions[item];
+        if (position < 0) {
+            push(item, key);
+        } else if (key < keys[position]) {
+            siftUp(position, item, key);
+        } else if (key > keys[position]) {
+            siftDown(position, item, key);
+        }
+    }
+
+    public int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int top = items[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0) {
+            siftDown(0, items[size], keys[size]);
+        }
+        return top;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[items[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position, int item, long key) {
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+            if (keys[parent] <= key) {
+                break;
+            }
+            move(parent, position);
+            position = parent;
+        }
+        place(position, item, key);
+    }
+
+    private void siftDown(int position, int item, long key) {
+        while (true) {
+            int first = position * ARITY + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + ARITY, size);
+            int best = first;
+            for (int child = first + 1; child < last; child++) {
+                if (keys[child] < keys[best]) {
+                    best = child;
+                }
+            }
+            if (key <= keys[best]) {
+                break;
+            }
+            move(best, position);
+            position = best;
+        }
+        place(position, item, key);
+    }
+
+    private void move(int from, int to) {
+        items[to] = items[from];
+        keys[to] = keys[from];
+        positions[items[to]] = to;
+    }
+
+    private void place(int position, int item, long key) {
+        items[position] = item;
+        keys[position] = key;
+        positions[item] = position;
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+public class LandmarkIndex {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final int[] landmarks;
+    private final int[] distances;
+    private final int capacity;
+    private final long buildNanos;
+
+    public interface DistanceSource {
+        void fill(int source, int[] distances);
+    }
+
+    private LandmarkIndex(int[] landmarks, int[] distances, int capacity, long buildNanos) {
+        this.landmarks = landmarks;
+        this.distances = distances;
+        this.capacity = capacity;
+        this.buildNanos = buildNanos;
+    }
+
+    public static LandmarkIndex build(int capacity, int count, long memoryLimitBytes,
+                                      IntPredicate present, DistanceSource source) {
+        long start = System.nanoTime();
+        long perLandmark = 4L * Math.max(capacity, 1);
+        int limit = (int) Math.min(count, memoryLimitBytes / perLandmark);
+        int presentCount = 0;
+        int first = -1;
+        for (int node = 0; node < capacity; node++) {
+            if (present.test(node)) {
+                presentCount++;
+                if (first < 0) {
+                    first = node;
+                }
+            }
+        }
+        limit = Math.min(limit, presentCount);
+
+        // Farthest-point selection: each landmark is the place furthest from all earlier ones,
+        // so unreachable places are picked first and every component gets a landmark.
+        int[] chosen = new int[limit];
+        int[] table = new int[limit * capacity];
+        int[] nearest = new int[capacity];
+        int[] scratch = new int[capacity];
+        Arrays.fill(nearest, UNREACHABLE);
+        int candidate = first;
+        if (limit > 0) {
+            source.fill(first, scratch);
+            candidate = farthest(scratch, present, first);
+        }
+        for (int i = 0; i < limit; i++) {
+            chosen[i] = candidate;
+            source.fill(candidate, scratch);
+            int best = -1;
+            long bestDistance = -1;
+            for (int node = 0; node < capacity; node++) {
+                table[node * limit + i] = scratch[node];
+                if (scratch[node] < nearest[node]) {
+                    nearest[node] = scratch[node];
+                }
+                if (present.test(node) && nearest[node] > bestDistance && nearest[node] != 0) {
+                    bestDistance = nearest[node];
+                    best = node;
+                }
+            }
+            if (best < 0) {
+                chosen = Arrays.copyOf(chosen, i + 1);
+                table = shrink(table, capacity, limit, i + 1);
+                break;
+            }
+            candidate = best;
+        }
+        return new LandmarkIndex(chosen, table, capacity, System.nanoTime() - start);
+    }
+
+    private static int farthest(int[] distances, IntPredicate present, int fallback) {
+        int best = fallback;
+        int bestDistance = -1;
+        for (int node = 0; node < distances.length; node++) {
+            if (present.test(node) && distances[node] != UNREACHABLE && distances[node] > bestDistance) {
+                bestDistance = distances[node];
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private static int[] shrink(int[] table, int capacity, int width, int newWidth) {
+        int[] shrunk = new int[capacity * newWidth];
+        for (int node = 0; node < capacity; node++) {
+            System.arraycopy(table, node * width, shrunk, node * newWidth, newWidth);
+        }
+        return shrunk;
+    }
+
+    public int lowerBound(int node, int target) {
+        int count = landmarks.length;
+        if (node >= capacity || target >= capacity) {
+            return 0;
+        }
+        int nodeRow = node * count;
+        int targetRow = target * count;
+        int bound = 0;
+        for (int i = 0; i < count; i++) {
+            int toNode = distances[nodeRow + i];
+            int toTarget = distances[targetRow + i];
+            if (toNode == UNREACHABLE || toTarget == UNREACHABLE) {
+                continue;
+            }
+            // Triangle inequality: |d(L, t) - d(L, v)| <= d(v, t) on an undirected graph.
+            int difference = Math.abs(toTarget - toNode);
+            if (difference > bound) {
+                bound = difference;
+            }
+        }
+        return bound;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    public int getLandmark(int i) {
+        return landmarks[i];
+    }
+
+    public long getMemoryBytes() {
+        return 4L * (distances.length + landmarks.length);
+    }
+
+    public long getBuildTimeNanos() {
+        return buildNanos;
+    }
+}
@@ -1,100 +1,436 @@
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 
 public class ListGraph<T> implements Graph<T>, Serializable {
     
-    private final Map<T, Set<Edge<T>>> nodes = new HashMap<>();
+    private static final long serialVersionUID = 1L;
+    private static final long MAP_BYTES = 64;
+    private static final long ENTRY_BYTES = 40;
+    private static final long EDGE_BYTES = 40;
+
+    private final Map<T, Map<T, Edge<T>>> nodes;
+    private final Map<T, Integer> indices;
+    private final List<T> nodeAt;
+    private final boolean snapshot;
+    private transient ListGraph<T> snapshotSource;
+    private transient Set<Reference<ListGraph<T>>> snapshots;
+    private transient ReferenceQueue<ListGraph<T>> releasedSnapshots;
+    // Bumped by every snapshot; maps and edges stamped with the current epoch are not shared with any snapshot.
+    private transient long epoch;
+    private transient ToDoubleFunction<? super T> xCoordinate;
+    private transient ToDoubleFunction<? super T> yCoordinate;
+    private transient double costPerDistance;
+    private transient boolean costPerDistanceValid;
+    private RouteMode routeMode = RouteMode.DIJKSTRA;
+    private transient long version;
+    private transient ContractionHierarchy<T> hierarchy;
+    private transient LandmarkIndex landmarks;
+    private transient PathCache<T> pathCache;
+    private transient ConnectivityIndex connectivity;
+    private transient SpatialIndex spatialIndex;
+    private int landmarkCount = 16;
+    private long landmarkMemoryLimit = 64L << 20;
+
+    public ListGraph() {
+        nodes = new HashMap<>();
+        indices = new HashMap<>();
+        nodeAt = new ArrayList<>();
+        snapshot = false;
+    }
+
+    private ListGraph(ListGraph<T> source) {
+        // Only the outer tables are copied; adjacency maps and edges stay shared until the source writes them.
+        nodes = new HashMap<>(source.nodes);
+        indices = new HashMap<>(source.indices);
+        nodeAt = new ArrayList<>(source.nodeAt);
+        snapshot = true;
+        snapshotSource = source;
+        xCoordinate = source.xCoordinate;
+        yCoordinate = source.yCoordinate;
+        costPerDistance = source.costPerDistance;
+        costPerDistanceValid = source.costPerDistanceValid;
+        routeMode = source.routeMode;
+        version = source.version;
+        landmarks = source.landmarks;
+        landmarkCount = source.landmarkCount;
+        landmarkMemoryLimit = source.landmarkMemoryLimit;
+    }
+
+    public ListGraph<T> snapshot() {
+        if (snapshot) {
+            return this;
+        }
+        if (snapshots == null) {
+            snapshots = new HashSet<>();
+            releasedSnapshots = new ReferenceQueue<>();
+        }
+        ListGraph<T> taken = new ListGraph<>(this);
+        snapshots.add(new WeakReference<>(taken, releasedSnapshots));
+        epoch++;
+        return taken;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public int getSnapshotCount() {
+        return snapshotsAlive() ? snapshots.size() : 0;
+    }
+
+    public long getRetainedBytes() {
+        if (!snapshot) {
+            return 0;
+        }
+        long bytes = 2 * MAP_BYTES + nodes.size() * (2 * ENTRY_BYTES + 8) + nodeAt.size() * 8L;
+        for (Map.Entry<T, Map<T, Edge<T>>> entry : nodes.entrySet()) {
+            Map<T, Edge<T>> edges = entry.getValue();
+            Map<T, Edge<T>> live = snapshotSource == null ? null : snapshotSource.nodes.get(entry.getKey());
+            if (edges == live) {
+                continue;
+            }
+            bytes += MAP_BYTES + edges.size() * ENTRY_BYTES;
+            for (Map.Entry<T, Edge<T>> edge : edges.entrySet()) {
+                if (live == null || live.get(edge.getKey()) != edge.getValue()) {
+                    bytes += EDGE_BYTES;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private boolean snapshotsAlive() {
+        if (snapshots == null || snapshots.isEmpty()) {
+            return false;
+        }
+        Reference<? extends ListGraph<T>> released;
+        while ((released = releasedSnapshots.poll()) != null) {
+            snapshots.remove(released);
+        }
+        return !snapshots.isEmpty();
+    }
+
+    private Edge<T> newEdge(T from, T to, String name, int weight) {
+        return new StampedEdge<>(from, to, name, weight, epoch);
+    }
+
+    private Map<T, Edge<T>> writableEdges(T node) {
+        Map<T, Edge<T>> edges = nodes.get(node);
+        if (((Adjacency<T>) edges).epoch != epoch && snapshotsAlive()) {
+            edges = new Adjacency<>(edges, epoch);
+            nodes.put(node, edges);
+        }
+        return edges;
+    }
+
+    private Edge<T> writableEdge(T node1, T node2) {
+        Map<T, Edge<T>> edges = writableEdges(node1);
+        Edge<T> edge = edges.get(node2);
+        if (edge != null && ((StampedEdge<T>) edge).epoch != epoch && snapshotsAlive()) {
+            edge = newEdge(edge.getFrom(), edge.getDestination(), edge.getName(), edge.getWeight());
+            edges.put(node2, edge);
+        }
+        return edge;
+    }
+
+    private void requireMutable() {
+        if (snapshot) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public void setCoordinates(ToDoubleFunction<? super T> xCoordinate, ToDoubleFunction<? super T> yCoordinate) {
+        this.xCoordinate = Objects.requireNonNull(xCoordinate);
+        this.yCoordinate = Objects.requireNonNull(yCoordinate);
+        costPerDistanceValid = false;
+        spatialIndex = null;
+    }
+
+    public RouteMode getRouteMode() {
+        return routeMode;
+    }
+
+    public void setRouteMode(RouteMode routeMode) {
+        this.routeMode = Objects.requireNonNull(routeMode);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public ContractionHierarchy<T> getContractionHierarchy() {
+        if (hierarchy == null) {
+            hierarchy = new ContractionHierarchy<>(this);
+        }
+        return hierarchy;
+    }
+
+    public void enablePathCache(int capacity) {
+        pathCache = new PathCache<>(capacity, version);
+    }
+
+    public void disablePathCache() {
+        pathCache = null;
+    }
+
+    public PathCache<T> getPathCache() {
+        return pathCache;
+    }
+
+    public LandmarkIndex getLandmarks() {
+        if (landmarks == null) {
+            landmarks = LandmarkIndex.build(nodeAt.size(), landmarkCount, landmarkMemoryLimit,
+                    node -> nodeAt.get(node) != null, this::fillDistances);
+        }
+        return landmarks;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) {
+            if (xCoordinate == null || yCoordinate == null) {
+                throw new IllegalStateException("Coordinates are required for spatial queries");
+            }
+            SpatialIndex index = new SpatialIndex();
+            for (int node = 0; node < nodeAt.size(); node++) {
+                T place = nodeAt.get(node);
+                if (place != null) {
+                    index.insert(node, xCoordinate.applyAsDouble(place), yCoordinate.applyAsDouble(place));
+                }
+            }
+            spatialIndex = index;
+        }
+        return spatialIndex;
+    }
+
+    public T getNearest(double x, double y) {
+        int node = getSpatialIndex().nearest(x, y);
+        return node < 0 ? null : nodeAt.get(node);
+    }
+
+    public List<T> getNearest(double x, double y, int count, double maxDistance) {
+        int[] found = getSpatialIndex().nearest(x, y, count, maxDistance);
+        List<T> nearest = new ArrayList<>(found.length);
+        for (int node : found) {
+            nearest.add(nodeAt.get(node));
+        }
+        return nearest;
+    }
+
+    public List<T> getNodesWithin(double minX, double minY, double maxX, double maxY) {
+        List<T> within = new ArrayList<>();
+        forEachNodeWithin(minX, minY, maxX, maxY, within::add);
+        return within;
+    }
+
+    public void forEachNodeWithin(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        getSpatialIndex().forEachWithin(minX, minY, maxX, maxY, node -> action.accept(nodeAt.get(node)));
+    }
+
+    public List<Edge<T>> getPathNear(double fromX, double fromY, double toX, double toY) {
+        // Arbitrary map positions are snapped to the closest place before routing.
+        T from = getNearest(fromX, fromY);
+        T to = getNearest(toX, toY);
+        return from == null ? null : getPath(from, to);
+    }
+
+    public void configureLandmarks(int count, long memoryLimitBytes) {
+        if (count < 1 || memoryLimitBytes < 0) {
+            throw new IllegalArgumentException();
+        }
+        landmarkCount = count;
+        landmarkMemoryLimit = memoryLimitBytes;
+        landmarks = null;
+    }
 
     public void add(T node) {
+        requireMutable();
         if (!nodes.containsKey(node)) {
-            nodes.put(node, new HashSet<>());
+            // Checked before anything changes, so a bad place never reaches the maps or a later spatial index.
+            double x = xCoordinate == null ? 0 : xCoordinate.applyAsDouble(node);
+            double y = yCoordinate == null ? 0 : yCoordinate.applyAsDouble(node);
+            if (!Double.isFinite(x) || !Double.isFinite(y)) {
+                throw new IllegalArgumentException("Coordinates must be finite");
+            }
+            nodes.put(node, new Adjacency<>(epoch));
+            indices.put(node, nodeAt.size());
+            nodeAt.add(node);
+            if (connectivity != null) {
+                connectivity.ensureCapacity(nodeAt.size());
+            }
+            if (spatialIndex != null) {
+                spatialIndex.insert(nodeAt.size() - 1, x, y);
+            }
+            landmarks = null;
+            version++;
+            if (pathCache != null) {
+                pathCache.retain(version);
+            }
         }
     }
 
     public void remove(T node) {
+        requireMutable();
         if (!nodes.containsKey(node)) {
             throw new NoSuchElementException();
         }
-        for (T n : nodes.keySet()) {
-            nodes.get(n).removeIf(edge -> edge.getDestination().equals(node));
+        // Every edge is stored in both directions, so only the neighbours need touching.
+        List<Edge<T>> removedEdges = new ArrayList<>();
+        for (Edge<T> edge : nodes.get(node).values()) {
+            removedEdges.add(edge);
+            if (!edge.getDestination().equals(node)) {
+                removedEdges.add(writableEdges(edge.getDestination()).remove(node));
+            }
+        }
+        if (connectivity != null) {
+            connectivity.markDirty(indices.get(node));
+        }
+        if (spatialIndex != null) {
+            spatialIndex.remove(indices.get(node));
         }
         nodes.remove(node);
+        nodeAt.set(indices.remove(node), null);
+        costPerDistanceValid = false;
+        pathsLengthened(removedEdges);
     }
 
     public void connect(T node1, T node2, String name, int weight) {
+        requireMutable();
         if (!nodes.containsKey(node1) || !nodes.containsKey(node2)) {
             throw new NoSuchElementException();
         }
-        if (weight < 0) {
+        // A road from a place to itself would share one adjacency entry between both directions.
+        if (weight < 0 || node1.equals(node2)) {
             throw new IllegalArgumentException();
         }
-        for (Edge<T> edge : nodes.get(node1)) {
-            if (edge.getDestination().equals(node2)) {
+        if (nodes.get(node1).containsKey(node2)) {
+            throw new IllegalStateException();
+        }
+        Edge<T> from = newEdge(node1, node2, name, weight);
+        Edge<T> to = newEdge(node2, node1, name, weight);
+        writableEdges(node1).put(node2, from);
+        writableEdges(node2).put(node1, to);
+        if (connectivity != null) {
+            connectivity.union(indices.get(node1), indices.get(node2));
+        }
+        lowerCostPerDistance(node1, node2, weight);
+        pathsShortened();
+    }
+
+    public void connectAll(List<T> from, List<T> to, List<String> names, int[] weights) {
+        requireMutable();
+        int count = weights.length;
+        if (from.size() != count || to.size() != count || names.size() != count) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < count; i++) {
+            if (!nodes.containsKey(from.get(i)) || !nodes.containsKey(to.get(i))) {
+                throw new NoSuchElementException();
+            }
+            if (weights[i] < 0 || from.get(i).equals(to.get(i))) {
+                throw new IllegalArgumentException();
+            }
+        }
+        // A duplicate undoes the edges added so far, so the batch is all-or-nothing like connect.
+        for (int i = 0; i < count; i++) {
+            T node1 = from.get(i);
+            T node2 = to.get(i);
+            if (nodes.get(node1).containsKey(node2)) {
+                for (int j = i - 1; j >= 0; j--) {
+                    writableEdges(from.get(j)).remove(to.get(j));
+                    writableEdges(to.get(j)).remove(from.get(j));
+                }
                 throw new IllegalStateException();
             }
+            writableEdges(node1).put(node2, newEdge(node1, node2, names.get(i), weights[i]));
+            writableEdges(node2).put(node1, newEdge(node2, node1, names.get(i), weights[i]));
+        }
+        for (int i = 0; i < count; i++) {
+            if (connectivity != null) {
+                connectivity.union(indices.get(from.get(i)), indices.get(to.get(i)));
+            }
+            lowerCostPerDistance(from.get(i), to.get(i), weights[i]);
+        }
+        if (count > 0) {
+            pathsShortened();
         }
-        Edge<T> from = new Edge<>(node1, node2, name, weight);
-        Edge<T> to = new Edge<>(node2, node1, name, weight);
-        nodes.get(node1).add(from);
-        nodes.get(node2).add(to);
     }
 
     public void disconnect(T node1, T node2) {
+        requireMutable();
         if (!nodes.containsKey(node1) || !nodes.containsKey(node2)) {
             throw new NoSuchElementException();
         }
-        boolean removed = false;
-        for (Edge<T> edge : nodes.get(node1)) {
-            if (edge.getDestination().equals(node2)) {
-                nodes.get(node1).remove(edge);
-                removed = true;
-                break;
-            }
+        if (node1.equals(node2)) {
+            throw new IllegalArgumentException();
         }
-        if (!removed) {
+        if (!nodes.get(node1).containsKey(node2)) {
             throw new IllegalStateException();
         }
-        removed = false;
-        for (Edge<T> edge : nodes.get(node2)) {
-            if (edge.getDestination().equals(node1)) {
-                nodes.get(node2).remove(edge);
-                removed = true;
-                break;
-            }
-        }
-        if (!removed) {
+        Edge<T> removed1 = writableEdges(node1).remove(node2);
+        Edge<T> removed2 = writableEdges(node2).remove(node1);
+        if (removed2 == null) {
             throw new IllegalStateException();
         }
+        if (connectivity != null) {
+            connectivity.markDirty(indices.get(node1));
+        }
+        costPerDistanceValid = false;
+        pathsLengthened(Arrays.asList(removed1, removed2));
     }
 
     public void setConnectionWeight(T node1, T node2, int weight) {
+        requireMutable();
         if (!nodes.containsKey(node1) || !nodes.containsKey(node2)) {
             throw new NoSuchElementException();
         }
         if (weight < 0) {
             throw new IllegalArgumentException();
         }
-        boolean updated = false;
-        for (Edge<T> edge : nodes.get(node1)) {
-            if (edge.getDestination().equals(node2)) {
-                edge.setWeight(weight);
-                updated = true;
-                break;
-            }
-        }
-        if (!updated) {
+        Edge<T> previous1 = nodes.get(node1).get(node2);
+        Edge<T> previous2 = nodes.get(node2).get(node1);
+        if (previous1 == null || previous2 == null) {
             throw new NoSuchElementException();
         }
-        updated = false;
-        for (Edge<T> edge : nodes.get(node2)) {
-            if (edge.getDestination().equals(node1)) {
-                edge.setWeight(weight);
-                updated = true;
-                break;
-            }
+        int previous = previous1.getWeight();
+        if (weight == previous) {
+            return;
         }
-        if (!updated) {
-            throw new NoSuchElementException();
+        // Snapshots keep the old edge objects, so the cache is invalidated through those.
+        Edge<T> updated1 = writableEdge(node1, node2);
+        Edge<T> updated2 = writableEdge(node2, node1);
+        updated1.setWeight(weight);
+        updated2.setWeight(weight);
+        if (weight < previous) {
+            lowerCostPerDistance(node1, node2, weight);
+            pathsShortened();
+        } else {
+            costPerDistanceValid = false;
+            pathsLengthened(Arrays.asList(previous1, previous2));
+        }
+    }
+
+    private void pathsShortened() {
+        landmarks = null;
+        version++;
+        if (pathCache != null) {
+            pathCache.invalidateAll(version);
+        }
+    }
+
+    private void pathsLengthened(Collection<Edge<T>> edges) {
+        version++;
+        if (pathCache != null) {
+            pathCache.invalidateEdges(edges, version);
         }
     }
     
@@ -106,94 +442,430 @@ public class ListGraph<T> implements Graph<T>, Serializable {
         if (!nodes.containsKey(node)) {
             throw new NoSuchElementException();
         }
-        return new HashSet<>(nodes.get(node));
+        return new HashSet<>(nodes.get(node).values());
+    }
+
+    public Set<T> nodeView() {
+        return Collections.unmodifiableSet(nodes.keySet());
+    }
+
+    public Collection<Edge<T>> edgeViewFrom(T node) {
+        return Collections.unmodifiableCollection(requireEdges(node).values());
+    }
+
+    public void forEachEdgeFrom(T node, Consumer<? super Edge<T>> action) {
+        requireEdges(node).values().forEach(action);
+    }
+
+    public void forEachNeighbour(T node, NeighbourVisitor<? super T> visitor) {
+        for (Edge<T> edge : requireEdges(node).values()) {
+            visitor.visit(edge.getDestination(), edge.getWeight());
+        }
+    }
+
+    private Map<T, Edge<T>> requireEdges(T node) {
+        Map<T, Edge<T>> edges = nodes.get(node);
+        if (edges == null) {
+            throw new NoSuchElementException();
+        }
+        return edges;
     }
 
     public Edge<T> getEdgeBetween(T node1, T node2) {
         if (!nodes.containsKey(node1) || !nodes.containsKey(node2)) {
             throw new NoSuchElementException();
         }
-        for (Edge<T> edge : nodes.get(node1)) {
-            if (edge.getDestination().equals(node2)) {
-                return edge;
-            }
-        }
-        return null;
+        return findEdge(node1, node2);
+    }
+
+    private Edge<T> findEdge(T node1, T node2) {
+        return nodes.get(node1).get(node2);
     }
 
     public boolean pathExists(T from, T to) {
-        if (!nodes.containsKey(from) || !nodes.containsKey(to)) {
+        Integer source = indices.get(from);
+        Integer target = indices.get(to);
+        if (source == null || target == null) {
             return false;
         }
-        Set<T> visited = new HashSet<>();
-        return depthFirstSearch(from, to, visited);
+        return connected(source, target);
     }
 
-    private boolean depthFirstSearch(T from, T to, Set<T> visited) {
-        visited.add(from);
-        if (from.equals(to)) {
+    private boolean connected(int source, int target) {
+        if (source == target) {
             return true;
         }
-        for (Edge<T> edge : nodes.get(from)) {
-            T next = edge.getDestination();
-            if (!visited.contains(next)) {
-                if (depthFirstSearch(next, to, visited)) {
-                    return true;
-                }
+        ConnectivityIndex index = connectivity();
+        refreshComponent(index, source);
+        refreshComponent(index, target);
+        return index.find(source) == index.find(target);
+    }
+
+    private ConnectivityIndex connectivity() {
+        if (connectivity == null) {
+            connectivity = new ConnectivityIndex();
+            connectivity.ensureCapacity(nodeAt.size());
+            for (int node = 0; node < nodeAt.size(); node++) {
+                unionNeighbours(connectivity, node);
             }
         }
-        return false;
+        return connectivity;
+    }
+
+    private void refreshComponent(ConnectivityIndex index, int node) {
+        // Removals may have split the component; only its own members are re-linked.
+        if (index.isDirty(node)) {
+            for (int member : index.detach(node)) {
+                unionNeighbours(index, member);
+            }
+        }
+    }
+
+    private void unionNeighbours(ConnectivityIndex index, int node) {
+        T place = nodeAt.get(node);
+        if (place == null) {
+            return;
+        }
+        for (Edge<T> edge : nodes.get(place).values()) {
+            index.union(node, indices.get(edge.getDestination()));
+        }
+    }
+
+    public boolean isQueryReady(RouteMode mode) {
+        if (connectivity == null || connectivity.hasDirtyComponents()) {
+            return false;
+        }
+        if (xCoordinate != null && spatialIndex == null) {
+            return false;
+        }
+        switch (mode) {
+            case A_STAR:
+                return xCoordinate == null || costPerDistanceValid;
+            case LANDMARKS:
+                return landmarks != null;
+            case CONTRACTION_HIERARCHY:
+                return hierarchy != null && !hierarchy.needsRebuild();
+            default:
+                return true;
+        }
+    }
+
+    public void prepareQueries(RouteMode mode) {
+        // Brings every lazily derived structure up to date so queries in this mode only read shared state.
+        ConnectivityIndex index = connectivity();
+        for (int node = 0; node < nodeAt.size() && index.hasDirtyComponents(); node++) {
+            refreshComponent(index, node);
+        }
+        if (xCoordinate != null) {
+            getSpatialIndex();
+        }
+        if (mode == RouteMode.A_STAR && xCoordinate != null) {
+            getCostPerDistance();
+        } else if (mode == RouteMode.LANDMARKS) {
+            getLandmarks();
+        } else if (mode == RouteMode.CONTRACTION_HIERARCHY && getContractionHierarchy().needsRebuild()) {
+            hierarchy.rebuild();
+        }
     }
 
     public List<Edge<T>> getPath(T from, T to) {
-        if (!nodes.containsKey(from) || !nodes.containsKey(to)) {
+        return getPath(from, to, routeMode);
+    }
+
+    public List<Edge<T>> getPath(T from, T to, RouteMode mode) {
+        if (pathCache == null || from.equals(to) || !nodes.containsKey(from) || !nodes.containsKey(to)) {
+            return findPath(from, to, mode);
+        }
+        List<Edge<T>> cached = pathCache.getPath(from, to, version);
+        if (cached != null) {
+            return cached.isEmpty() ? null : new ArrayList<>(cached);
+        }
+        List<Edge<T>> path = findPath(from, to, mode);
+        pathCache.putPath(from, to, path, version);
+        return path;
+    }
+
+    private List<Edge<T>> findPath(T from, T to, RouteMode mode) {
+        Integer source = indices.get(from);
+        Integer target = indices.get(to);
+        if (source == null || target == null || source.equals(target)) {
             return null;
         }
+        if (!connected(source, target)) {
+            return null;
+        }
+        if (mode == RouteMode.BIDIRECTIONAL) {
+            return bidirectionalPath(source, target);
+        }
+        if (mode == RouteMode.CONTRACTION_HIERARCHY) {
+            return getContractionHierarchy().getPath(from, to);
+        }
+        // Bounds are prepared first: building landmark tables reuses this thread's search context.
+        LowerBound bound = null;
+        if (mode == RouteMode.A_STAR) {
+            bound = coordinateBound(target);
+        } else if (mode == RouteMode.LANDMARKS) {
+            bound = landmarkBound(target);
+        }
+        SearchContext context = SearchContext.acquire(SearchContext.FORWARD, nodeAt.size());
+        boolean found = bound == null ? dijkstra(context, source, target) : aStar(context, source, target, bound);
+        if (!found) {
+            return null;
+        }
+        return buildPath(context, source, target);
+    }
+
+    private interface LowerBound {
+        long estimate(int node);
+    }
+
+    public long[] getDistances(T from, List<T> targets) {
+        long[] distances = new long[targets.size()];
+        Integer source = indices.get(from);
+        if (source == null) {
+            Arrays.fill(distances, DistanceMatrix.UNREACHABLE);
+            return distances;
+        }
+        SearchContext context = searchTargets(source, targets);
+        for (int i = 0; i < distances.length; i++) {
+            Integer target = indices.get(targets.get(i));
+            long distance = target == null ? Long.MAX_VALUE : context.distance(target);
+            distances[i] = distance == Long.MAX_VALUE ? DistanceMatrix.UNREACHABLE : distance;
+        }
+        return distances;
+    }
+
+    public List<List<Edge<T>>> getPaths(T from, List<T> targets) {
+        List<List<Edge<T>>> paths = new ArrayList<>(targets.size());
+        Integer source = indices.get(from);
+        if (source == null) {
+            paths.addAll(Collections.nCopies(targets.size(), null));
+            return paths;
+        }
+        SearchContext context = searchTargets(source, targets);
+        for (T to : targets) {
+            Integer target = indices.get(to);
+            boolean reached = target != null && !target.equals(source) && context.isReached(target);
+            paths.add(reached ? buildPath(context, source, target) : null);
+        }
+        return paths;
+    }
+
+    private SearchContext searchTargets(int source, List<T> targets) {
+        // The backward context only marks which places are still wanted; one search serves every target.
+        SearchContext wanted = SearchContext.acquire(SearchContext.BACKWARD, nodeAt.size());
+        int remaining = 0;
+        for (T to : targets) {
+            Integer target = indices.get(to);
+            if (target != null && !wanted.isReached(target)) {
+                wanted.reach(target, 0, -1, null);
+                remaining++;
+            }
+        }
+        SearchContext context = SearchContext.acquire(SearchContext.FORWARD, nodeAt.size());
+        IndexedHeap queue = context.heap();
+        context.reach(source, 0, -1, null);
+        queue.push(source, 0);
+        while (remaining > 0 && !queue.isEmpty()) {
+            int current = queue.poll();
+            context.countSettled();
+            if (wanted.isReached(current)) {
+                remaining--;
+            }
+            long distance = context.distance(current);
+            for (Edge<T> edge : nodes.get(nodeAt.get(current)).values()) {
+                int next = indices.get(edge.getDestination());
+                long newDistance = distance + edge.getWeight();
+                if (newDistance < context.distance(next)) {
+                    context.reach(next, newDistance, current, edge);
+                    queue.pushOrDecrease(next, newDistance);
+                }
+            }
+        }
+        return context;
+    }
 
-        Map<T, Double> distances = new HashMap<>();
-        Map<T, Edge<T>> previousEdges = new HashMap<>();
-        PriorityQueue<NodeDistance<T>> queue = new PriorityQueue<>();
-        Set<T> visited = new HashSet<>();
+    private boolean dijkstra(SearchContext context, int source, int target) {
+        IndexedHeap queue = context.heap();
+        context.reach(source, 0, -1, null);
+        queue.push(source, 0);
 
-        distances.put(from, 0.0);
-        queue.offer(new NodeDistance<>(from, 0.0));
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            context.countSettled();
+            if (current == target) {
+                return true;
+            }
+            long distance = context.distance(current);
+            for (Edge<T> edge : nodes.get(nodeAt.get(current)).values()) {
+                int next = indices.get(edge.getDestination());
+                long newDistance = distance + edge.getWeight();
+                if (newDistance < context.distance(next)) {
+                    context.reach(next, newDistance, current, edge);
+                    queue.pushOrDecrease(next, newDistance);
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean aStar(SearchContext context, int source, int target, LowerBound bound) {
+        IndexedHeap queue = context.heap();
+        context.reach(source, 0, -1, null);
+        queue.push(source, bound.estimate(source));
 
         while (!queue.isEmpty()) {
-            T current = queue.poll().getNode();
-            if (current.equals(to)) {
+            int current = queue.poll();
+            context.countSettled();
+            if (current == target) {
+                return true;
+            }
+            long distance = context.distance(current);
+            for (Edge<T> edge : nodes.get(nodeAt.get(current)).values()) {
+                int next = indices.get(edge.getDestination());
+                long newDistance = distance + edge.getWeight();
+                if (newDistance < context.distance(next)) {
+                    context.reach(next, newDistance, current, edge);
+                    queue.pushOrDecrease(next, newDistance + bound.estimate(next));
+                }
+            }
+        }
+        return false;
+    }
+
+    private LowerBound coordinateBound(int target) {
+        // Without coordinates (e.g. after deserialization) the zero heuristic leaves A* a plain Dijkstra search.
+        if (xCoordinate == null || yCoordinate == null) {
+            return null;
+        }
+        double scale = getCostPerDistance();
+        T goal = nodeAt.get(target);
+        double goalX = xCoordinate.applyAsDouble(goal);
+        double goalY = yCoordinate.applyAsDouble(goal);
+        return node -> estimate(nodeAt.get(node), goalX, goalY, scale);
+    }
+
+    private LowerBound landmarkBound(int target) {
+        LandmarkIndex index = getLandmarks();
+        return node -> index.lowerBound(node, target);
+    }
+
+    private void fillDistances(int source, int[] distances) {
+        SearchContext context = SearchContext.acquire(SearchContext.FORWARD, nodeAt.size());
+        dijkstra(context, source, -1);
+        for (int node = 0; node < distances.length; node++) {
+            // Landmark tables stay int; a longer distance is stored as unknown, which only weakens the bound.
+            distances[node] = (int) Math.min(context.distance(node), Integer.MAX_VALUE);
+        }
+    }
+
+    private List<Edge<T>> bidirectionalPath(int source, int target) {
+        SearchContext forward = SearchContext.acquire(SearchContext.FORWARD, nodeAt.size());
+        SearchContext backward = SearchContext.acquire(SearchContext.BACKWARD, nodeAt.size());
+        forward.reach(source, 0, -1, null);
+        forward.heap().push(source, 0);
+        backward.reach(target, 0, -1, null);
+        backward.heap().push(target, 0);
+
+        long best = Long.MAX_VALUE;
+        int meeting = -1;
+        while (!forward.heap().isEmpty() && !backward.heap().isEmpty()) {
+            // No undiscovered path can beat one that is shorter than both frontier radii combined.
+            if (forward.heap().peekKey() + backward.heap().peekKey() >= best) {
                 break;
             }
-            visited.add(current);
-            for (Edge<T> edge : nodes.get(current)) {
-                T next = edge.getDestination();
-                if (!visited.contains(next)) {
-                    double newDistance = distances.get(current) + edge.getWeight();
-                    if (!distances.containsKey(next) || newDistance < distances.get(next)) {
-                        distances.put(next, newDistance);
-                        previousEdges.put(next, edge);
-                        queue.offer(new NodeDistance<>(next, newDistance));
+            boolean forwardTurn = forward.heap().peekKey() <= backward.heap().peekKey();
+            SearchContext current = forwardTurn ? forward : backward;
+            SearchContext other = forwardTurn ? backward : forward;
+
+            int node = current.heap().poll();
+            current.countSettled();
+            long distance = current.distance(node);
+            for (Edge<T> edge : nodes.get(nodeAt.get(node)).values()) {
+                int next = indices.get(edge.getDestination());
+                long newDistance = distance + edge.getWeight();
+                if (newDistance < current.distance(next)) {
+                    current.reach(next, newDistance, node, edge);
+                    current.heap().pushOrDecrease(next, newDistance);
+                    if (other.isReached(next) && newDistance + other.distance(next) < best) {
+                        best = newDistance + other.distance(next);
+                        meeting = next;
                     }
                 }
             }
         }
-        if (!previousEdges.containsKey(to)) {
+        if (meeting < 0) {
             return null;
         }
-        List<Edge<T>> path = new ArrayList<>();
-        Edge<T> edge = previousEdges.get(to);
-        while (edge != null) {
-            path.add(0, edge);
-            edge = previousEdges.get(edge.getFrom());
+
+        List<Edge<T>> path = buildPath(forward, source, meeting);
+        for (int node = meeting; node != target; node = backward.parent(node)) {
+            path.add(findEdge(nodeAt.get(node), nodeAt.get(backward.parent(node))));
         }
         return path;
     }
+
+    private long estimate(T node, double goalX, double goalY, double scale) {
+        double dx = xCoordinate.applyAsDouble(node) - goalX;
+        double dy = yCoordinate.applyAsDouble(node) - goalY;
+        // Floored so the bound stays consistent with integer edge weights.
+        return (long) Math.floor(scale * Math.sqrt(dx * dx + dy * dy));
+    }
+
+    private double getCostPerDistance() {
+        if (!costPerDistanceValid) {
+            costPerDistance = Double.POSITIVE_INFINITY;
+            for (Map<T, Edge<T>> edges : nodes.values()) {
+                for (Edge<T> edge : edges.values()) {
+                    costPerDistance = Math.min(costPerDistance,
+                            costPerDistance(edge.getFrom(), edge.getDestination(), edge.getWeight()));
+                }
+            }
+            costPerDistanceValid = true;
+        }
+        return Double.isInfinite(costPerDistance) ? 0 : costPerDistance;
+    }
+
+    private void lowerCostPerDistance(T node1, T node2, int weight) {
+        if (costPerDistanceValid) {
+            costPerDistance = Math.min(costPerDistance, costPerDistance(node1, node2, weight));
+        }
+    }
+
+    private double costPerDistance(T node1, T node2, int weight) {
+        if (xCoordinate == null || yCoordinate == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double dx = xCoordinate.applyAsDouble(node1) - xCoordinate.applyAsDouble(node2);
+        double dy = yCoordinate.applyAsDouble(node1) - yCoordinate.applyAsDouble(node2);
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (distance == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // Shaved slightly so rounding can never push scale * distance above the edge weight.
+        return weight / distance * (1 - 1e-9);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Edge<T>> buildPath(SearchContext context, int source, int target) {
+        int length = 0;
+        for (int node = target; node != source; node = context.parent(node)) {
+            length++;
+        }
+        List<Edge<T>> path = new ArrayList<>(length);
+        for (int node = target; node != source; node = context.parent(node)) {
+            path.add((Edge<T>) context.parentEdge(node));
+        }
+        Collections.reverse(path);
+        return path;
+    }
    
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         for (T node : nodes.keySet()) {
             sb.append(node.toString()).append("\n");
-            for (Edge<T> edge : nodes.get(node)) {
+            for (Edge<T> edge : nodes.get(node).values()) {
                 sb.append("  ").append(edge.toString()).append("\n");
             }
         }
@@ -201,6 +873,201 @@ public class ListGraph<T> implements Graph<T>, Serializable {
     }
 
     public void clear() {
+        requireMutable();
         nodes.clear();
+        indices.clear();
+        nodeAt.clear();
+        connectivity = null;
+        spatialIndex = null;
+        pathsShortened();
+    }
+
+    private Object writeReplace() {
+        return new SerializedForm<>(this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("ListGraph is read through its serialized form");
+    }
+
+    private static final class Adjacency<T> extends HashMap<T, Edge<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final long epoch;
+
+        Adjacency(long epoch) {
+            this.epoch = epoch;
+        }
+
+        Adjacency(Map<T, Edge<T>> edges, long epoch) {
+            super(edges);
+            this.epoch = epoch;
+        }
+    }
+
+    private static final class StampedEdge<T> extends Edge<T> {
+        private static final long serialVersionUID = 1L;
+
+        private final long epoch;
+
+        StampedEdge(T from, T to, String name, int weight, long epoch) {
+            super(from, to, name, weight);
+            this.epoch = epoch;
+        }
+    }
+
+    private static final class SerializedForm<T> implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final int FORMAT = 1;
+
+        private transient ListGraph<T> graph;
+
+        SerializedForm(ListGraph<T> graph) {
+            this.graph = graph;
+        }
+
+        // Live places are written once and renumbered densely; each connection is written once, from its
+        // lower-numbered end, as the neighbour delta, an index into the name dictionary and the weight.
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            List<T> places = new ArrayList<>(graph.nodes.size());
+            Map<T, Integer> ids = new HashMap<>();
+            for (T node : graph.nodeAt) {
+                if (node != null) {
+                    ids.put(node, places.size());
+                    places.add(node);
+                }
+            }
+            Map<String, Integer> nameIds = new HashMap<>();
+            List<String> names = new ArrayList<>();
+            int connections = 0;
+            for (int id = 0; id < places.size(); id++) {
+                for (Edge<T> edge : graph.nodes.get(places.get(id)).values()) {
+                    if (ids.get(edge.getDestination()) >= id) {
+                        connections++;
+                        if (!nameIds.containsKey(edge.getName())) {
+                            nameIds.put(edge.getName(), names.size());
+                            names.add(edge.getName());
+                        }
+                    }
+                }
+            }
+
+            out.writeInt(FORMAT);
+            out.writeBoolean(graph.snapshot);
+            out.writeObject(graph.routeMode);
+            out.writeInt(graph.landmarkCount);
+            out.writeLong(graph.landmarkMemoryLimit);
+            out.writeInt(places.size());
+            for (T place : places) {
+                out.writeObject(place);
+            }
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeBoolean(name != null);
+                if (name != null) {
+                    out.writeUTF(name);
+                }
+            }
+            out.writeInt(connections);
+            for (int id = 0; id < places.size(); id++) {
+                Collection<Edge<T>> edges = graph.nodes.get(places.get(id)).values();
+                int forward = 0;
+                for (Edge<T> edge : edges) {
+                    if (ids.get(edge.getDestination()) >= id) {
+                        forward++;
+                    }
+                }
+                writeVarint(out, forward);
+                for (Edge<T> edge : edges) {
+                    int neighbour = ids.get(edge.getDestination());
+                    if (neighbour >= id) {
+                        writeVarint(out, neighbour - id);
+                        writeVarint(out, nameIds.get(edge.getName()));
+                        writeVarint(out, edge.getWeight());
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            if (in.readInt() != FORMAT) {
+                throw new InvalidObjectException("Unknown ListGraph format");
+            }
+            boolean snapshot = in.readBoolean();
+            ListGraph<T> read = new ListGraph<>();
+            read.routeMode = (RouteMode) in.readObject();
+            read.landmarkCount = in.readInt();
+            read.landmarkMemoryLimit = in.readLong();
+            int placeCount = in.readInt();
+            List<T> places = new ArrayList<>(Math.min(placeCount, 1 << 16));
+            for (int i = 0; i < placeCount; i++) {
+                T place = (T) in.readObject();
+                places.add(place);
+                read.add(place);
+            }
+            if (read.nodeAt.size() != placeCount || read.routeMode == null) {
+                throw new InvalidObjectException("Duplicate place in ListGraph stream");
+            }
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readBoolean() ? in.readUTF() : null;
+            }
+
+            int connections = in.readInt();
+            List<T> from = new ArrayList<>(Math.min(connections, 1 << 16));
+            List<T> to = new ArrayList<>(Math.min(connections, 1 << 16));
+            List<String> edgeNames = new ArrayList<>(Math.min(connections, 1 << 16));
+            int[] weights = new int[Math.min(connections, 1 << 16)];
+            int count = 0;
+            try {
+                for (int id = 0; id < placeCount; id++) {
+                    for (int forward = readVarint(in); forward > 0; forward--) {
+                        if (count == weights.length) {
+                            weights = Arrays.copyOf(weights, Math.max(count * 2, 16));
+                        }
+                        from.add(places.get(id));
+                        to.add(places.get(id + readVarint(in)));
+                        edgeNames.add(names[readVarint(in)]);
+                        weights[count++] = readVarint(in);
+                    }
+                }
+                if (count != connections) {
+                    throw new InvalidObjectException("Connection count mismatch in ListGraph stream");
+                }
+                read.connectAll(from, to, edgeNames, Arrays.copyOf(weights, count));
+            } catch (IndexOutOfBoundsException | IllegalArgumentException | IllegalStateException e) {
+                InvalidObjectException invalid = new InvalidObjectException("Corrupt ListGraph stream");
+                invalid.initCause(e);
+                throw invalid;
+            }
+            graph = snapshot ? read.snapshot() : read;
+        }
+
+        private Object readResolve() {
+            return graph;
+        }
+
+        private static void writeVarint(ObjectOutputStream out, int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        private static int readVarint(ObjectInputStream in) throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int next = in.readUnsignedByte();
+                value |= (next & 0x7f) << shift;
+                if ((next & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Varint too long");
+        }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
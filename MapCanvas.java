@@ -0,0 +1,678 @@
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Point2D;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import java.util.*;
+import java.util.function.Consumer;
+
+public class MapCanvas extends Pane {
+    private static final double PLACE_RADIUS = 10;
+    private static final double MIN_PLACE_RADIUS = 2;
+    // Connections spanning the area that holds about this many places are found through their first place.
+    private static final int PLACES_PER_SHORT_EDGE = 8;
+    // Above this many places in view, nearby places are drawn as one cluster and short connections are skipped.
+    private static final int CLUSTER_LIMIT = 20000;
+    private static final int LABEL_LIMIT = 500;
+    private static final double CLUSTER_PIXELS = 24;
+    private static final int PATH_BATCH = 4096;
+    private static final double MIN_SCALE = 1e-5;
+    private static final double MAX_SCALE = 64;
+
+    private static class EdgeTable {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        private int slot(long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ mixed >>> 32) & (keys.length - 1);
+        }
+
+        private int get(long key) {
+            for (int i = slot(key); keys[i] != 0; i = (i + 1) & (keys.length - 1)) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        private void put(long key, int value) {
+            if (size * 2 >= keys.length) {
+                long[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new int[oldKeys.length * 2];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != 0) {
+                        put(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            int i = slot(key);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & (keys.length - 1);
+            }
+            if (keys[i] == 0) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private int remove(long key) {
+            int i = slot(key);
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return -1;
+                }
+                i = (i + 1) & (keys.length - 1);
+            }
+            int value = values[i];
+            // Later entries of the same probe run move back into the hole, so lookups never stop early.
+            for (int j = (i + 1) & (keys.length - 1); keys[j] != 0; j = (j + 1) & (keys.length - 1)) {
+                int home = slot(keys[j]);
+                if (((j - home) & (keys.length - 1)) >= ((j - i) & (keys.length - 1))) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    i = j;
+                }
+            }
+            keys[i] = 0;
+            size--;
+            return value;
+        }
+
+        private void clear() {
+            keys = new long[1024];
+            values = new int[1024];
+            size = 0;
+        }
+    }
+
+    private final Canvas canvas = new Canvas();
+    private final Consumer<T> onPlaceClicked;
+    private Image background;
+
+    // Places and connections keep their slots until the next rebuild; removal only empties a slot.
+    private T[] places = new T[1024];
+    private double[] xs = new double[1024];
+    private double[] ys = new double[1024];
+    private int[] firstEdge = new int[1024];
+    private int placeSlots;
+    private int placeCount;
+    private final Map<T, Integer> slotOf = new IdentityHashMap<>();
+    private final SpatialIndex index = new SpatialIndex();
+    private int[] edgeFrom = new int[1024];
+    private int[] edgeTo = new int[1024];
+    private int[] nextEdge = new int[1024];
+    private int edgeSlots;
+    private int edgeCount;
+    private final EdgeTable edgeSlotOf = new EdgeTable();
+    private int[] longEdges = new int[64];
+    private int longEdgeCount;
+    private double shortEdgeLength = 64;
+    private int rebuildAt = 1024;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    private int[] visibleSlots = new int[1024];
+    private int visibleCount;
+    private double[] clusterXs = new double[256];
+    private double[] clusterYs = new double[256];
+    private int[] clusterSizes = new int[256];
+    private int clusterCount;
+
+    private final Set<T> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+    private double originX;
+    private double originY;
+    private double scale = 1;
+    private boolean fitPending;
+    private boolean clustered;
+    private boolean dirty = true;
+    private AnimationTimer timer;
+    private double dragX;
+    private double dragY;
+
+    private int drawnPlaces;
+    private int drawnClusters;
+    private int drawnConnections;
+    private long frameNanos;
+
+    public MapCanvas(Consumer<T> onPlaceClicked) {
+        this.onPlaceClicked = onPlaceClicked;
+        getChildren().add(canvas);
+        setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        setOnMouseDragged(event -> {
+            pan(event.getX() - dragX, event.getY() - dragY);
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        setOnMouseClicked(event -> {
+            if (event.getButton() == MouseButton.PRIMARY && event.isStillSincePress()) {
+                click(event.getX(), event.getY());
+            }
+        });
+        setOnScroll(event -> zoom(Math.pow(1.002, event.getDeltaY()), event.getX(), event.getY()));
+        // Redraws are coalesced into at most one per frame, however many edits or mouse events arrive.
+        sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (newScene != null) {
+                if (timer == null) {
+                    timer = new AnimationTimer() {
+                        @Override
+                        public void handle(long now) {
+                            if (dirty) {
+                                redraw();
+                            }
+                        }
+                    };
+                }
+                timer.start();
+            } else if (timer != null) {
+                timer.stop();
+            }
+        });
+    }
+
+    public void setBackground(Image background) {
+        this.background = background;
+        requestLayout();
+        requestRedraw();
+    }
+
+    public Image getBackgroundImage() {
+        return background;
+    }
+
+    public void clear() {
+        places = new T[1024];
+        xs = new double[1024];
+        ys = new double[1024];
+        firstEdge = new int[1024];
+        placeSlots = 0;
+        placeCount = 0;
+        slotOf.clear();
+        index.clear();
+        edgeFrom = new int[1024];
+        edgeTo = new int[1024];
+        nextEdge = new int[1024];
+        edgeSlots = 0;
+        edgeCount = 0;
+        edgeSlotOf.clear();
+        longEdgeCount = 0;
+        shortEdgeLength = 64;
+        rebuildAt = 1024;
+        minX = minY = Double.POSITIVE_INFINITY;
+        maxX = maxY = Double.NEGATIVE_INFINITY;
+        selected.clear();
+        requestRedraw();
+    }
+
+    public void addPlace(T place) {
+        int slot = appendPlace(place);
+        if (slot < 0) {
+            return;
+        }
+        if (placeCount > rebuildAt) {
+            rebuild();
+        } else {
+            index.insert(slot, xs[slot], ys[slot]);
+        }
+        requestRedraw();
+    }
+
+    // Loading a whole map indexes it once at the end, when the connection length threshold is known.
+    public void addPlaces(Collection<T> places) {
+        for (T place : places) {
+            appendPlace(place);
+        }
+        rebuild();
+        requestRedraw();
+    }
+
+    private int appendPlace(T place) {
+        if (slotOf.containsKey(place)) {
+            return -1;
+        }
+        if (placeSlots == places.length) {
+            places = Arrays.copyOf(places, placeSlots * 2);
+            xs = Arrays.copyOf(xs, placeSlots * 2);
+            ys = Arrays.copyOf(ys, placeSlots * 2);
+            firstEdge = Arrays.copyOf(firstEdge, placeSlots * 2);
+        }
+        int slot = placeSlots++;
+        places[slot] = place;
+        xs[slot] = place.getX();
+        ys[slot] = place.getY();
+        firstEdge[slot] = -1;
+        slotOf.put(place, slot);
+        placeCount++;
+        minX = Math.min(minX, xs[slot]);
+        minY = Math.min(minY, ys[slot]);
+        maxX = Math.max(maxX, xs[slot]);
+        maxY = Math.max(maxY, ys[slot]);
+        return slot;
+    }
+
+    public void removePlace(T place) {
+        Integer slot = slotOf.remove(place);
+        if (slot == null) {
+            return;
+        }
+        index.remove(slot);
+        // Connections to the place are skipped when drawn and dropped by the next rebuild.
+        places[slot] = null;
+        placeCount--;
+        selected.remove(place);
+        requestRedraw();
+    }
+
+    public void addConnection(T from, T to) {
+        int edge = appendConnection(from, to);
+        if (edge >= 0) {
+            insertEdge(edge);
+            requestRedraw();
+        }
+    }
+
+    public void addConnections(Collection<Edge<T>> connections) {
+        for (Edge<T> connection : connections) {
+            int edge = appendConnection(connection.getFrom(), connection.getDestination());
+            if (edge >= 0) {
+                insertEdge(edge);
+            }
+        }
+        requestRedraw();
+    }
+
+    private int appendConnection(T from, T to) {
+        Integer slot1 = slotOf.get(from);
+        Integer slot2 = slotOf.get(to);
+        if (slot1 == null || slot2 == null || slot1.equals(slot2) || edgeSlotOf.get(edgeKey(slot1, slot2)) >= 0) {
+            return -1;
+        }
+        if (edgeSlots == edgeFrom.length) {
+            edgeFrom = Arrays.copyOf(edgeFrom, edgeSlots * 2);
+            edgeTo = Arrays.copyOf(edgeTo, edgeSlots * 2);
+            nextEdge = Arrays.copyOf(nextEdge, edgeSlots * 2);
+        }
+        int edge = edgeSlots++;
+        edgeFrom[edge] = slot1;
+        edgeTo[edge] = slot2;
+        edgeSlotOf.put(edgeKey(slot1, slot2), edge);
+        edgeCount++;
+        return edge;
+    }
+
+    public void removeConnection(T from, T to) {
+        Integer slot1 = slotOf.get(from);
+        Integer slot2 = slotOf.get(to);
+        if (slot1 == null || slot2 == null) {
+            return;
+        }
+        int edge = edgeSlotOf.remove(edgeKey(slot1, slot2));
+        if (edge < 0) {
+            return;
+        }
+        edgeFrom[edge] = -1;
+        edgeCount--;
+        if (edgeSlots - edgeCount > Math.max(1024, edgeCount)) {
+            rebuild();
+        }
+        requestRedraw();
+    }
+
+    public void setSelected(Collection<T> places) {
+        selected.clear();
+        selected.addAll(places);
+        requestRedraw();
+    }
+
+    private static long edgeKey(int slot1, int slot2) {
+        return (long) Math.min(slot1, slot2) << 32 | Math.max(slot1, slot2);
+    }
+
+    private void insertEdge(int edge) {
+        int from = edgeFrom[edge];
+        int to = edgeTo[edge];
+        // A short connection is drawn when a place within its length of the view is; longer ones, like
+        // flights, are few enough to check one by one.
+        if (Math.hypot(xs[from] - xs[to], ys[from] - ys[to]) <= shortEdgeLength) {
+            nextEdge[edge] = firstEdge[from];
+            firstEdge[from] = edge;
+        } else {
+            if (longEdgeCount == longEdges.length) {
+                longEdges = Arrays.copyOf(longEdges, longEdgeCount * 2);
+            }
+            longEdges[longEdgeCount++] = edge;
+        }
+    }
+
+    private void rebuild() {
+        if (placeSlots != placeCount || edgeSlots != edgeCount) {
+            compact();
+        }
+        double area = Math.max(maxX - minX, 1) * Math.max(maxY - minY, 1);
+        shortEdgeLength = placeCount == 0 ? 64 : Math.sqrt(area * PLACES_PER_SHORT_EDGE / placeCount);
+        rebuildAt = Math.max(1024, placeCount * 2);
+        index.clear();
+        for (int slot = 0; slot < placeSlots; slot++) {
+            index.insert(slot, xs[slot], ys[slot]);
+            firstEdge[slot] = -1;
+        }
+        longEdgeCount = 0;
+        for (int edge = 0; edge < edgeSlots; edge++) {
+            insertEdge(edge);
+        }
+    }
+
+    private void compact() {
+        int[] remap = new int[placeSlots];
+        int live = 0;
+        minX = minY = Double.POSITIVE_INFINITY;
+        maxX = maxY = Double.NEGATIVE_INFINITY;
+        for (int slot = 0; slot < placeSlots; slot++) {
+            if (places[slot] == null) {
+                remap[slot] = -1;
+                continue;
+            }
+            remap[slot] = live;
+            places[live] = places[slot];
+            xs[live] = xs[slot];
+            ys[live] = ys[slot];
+            minX = Math.min(minX, xs[live]);
+            minY = Math.min(minY, ys[live]);
+            maxX = Math.max(maxX, xs[live]);
+            maxY = Math.max(maxY, ys[live]);
+            live++;
+        }
+        Arrays.fill(places, live, placeSlots, null);
+        placeSlots = live;
+        slotOf.clear();
+        for (int slot = 0; slot < live; slot++) {
+            slotOf.put(places[slot], slot);
+        }
+        int edges = 0;
+        edgeSlotOf.clear();
+        for (int edge = 0; edge < edgeSlots; edge++) {
+            if (edgeFrom[edge] < 0 || remap[edgeFrom[edge]] < 0 || remap[edgeTo[edge]] < 0) {
+                continue;
+            }
+            edgeFrom[edges] = remap[edgeFrom[edge]];
+            edgeTo[edges] = remap[edgeTo[edge]];
+            edgeSlotOf.put(edgeKey(edgeFrom[edges], edgeTo[edges]), edges);
+            edges++;
+        }
+        edgeSlots = edges;
+        edgeCount = edges;
+    }
+
+    public void pan(double dx, double dy) {
+        originX -= dx / scale;
+        originY -= dy / scale;
+        requestRedraw();
+    }
+
+    public void zoom(double factor, double x, double y) {
+        double worldX = originX + x / scale;
+        double worldY = originY + y / scale;
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        originX = worldX - x / scale;
+        originY = worldY - y / scale;
+        requestRedraw();
+    }
+
+    public void setViewport(double originX, double originY, double scale) {
+        this.originX = originX;
+        this.originY = originY;
+        this.scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        fitPending = false;
+        requestRedraw();
+    }
+
+    // Shows every place, but never zooms in past the scale the scene graph view would use.
+    public void fit() {
+        double width = getWidth();
+        double height = getHeight();
+        if (width <= 0 || height <= 0) {
+            fitPending = true;
+            return;
+        }
+        fitPending = false;
+        double left = Math.min(0, minX);
+        double top = Math.min(0, minY);
+        double right = Math.max(background != null ? background.getWidth() : 0, maxX + PLACE_RADIUS);
+        double bottom = Math.max(background != null ? background.getHeight() : 0, maxY + PLACE_RADIUS);
+        if (placeCount == 0 || left >= 0 && top >= 0 && right <= width && bottom <= height) {
+            setViewport(0, 0, 1);
+        } else {
+            double fitted = Math.min(1, Math.min(width / (right - left), height / (bottom - top)));
+            setViewport(left, top, fitted);
+        }
+    }
+
+    public Point2D sceneToWorld(double sceneX, double sceneY) {
+        Point2D local = sceneToLocal(sceneX, sceneY);
+        return new Point2D(originX + local.getX() / scale, originY + local.getY() / scale);
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public int getDrawnPlaces() {
+        return drawnPlaces;
+    }
+
+    public int getDrawnClusters() {
+        return drawnClusters;
+    }
+
+    public int getDrawnConnections() {
+        return drawnConnections;
+    }
+
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    private void click(double x, double y) {
+        if (clustered) {
+            // A cluster stands for too many places to pick from, so clicking one zooms in on it.
+            zoom(4, x, y);
+            return;
+        }
+        int[] nearest = index.nearest(originX + x / scale, originY + y / scale, 1, placeRadius() / scale);
+        if (nearest.length > 0 && onPlaceClicked != null) {
+            onPlaceClicked.accept(places[nearest[0]]);
+        }
+    }
+
+    private double placeRadius() {
+        return Math.max(MIN_PLACE_RADIUS, Math.min(PLACE_RADIUS, PLACE_RADIUS * scale));
+    }
+
+    private void requestRedraw() {
+        dirty = true;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        canvas.setWidth(getWidth());
+        canvas.setHeight(getHeight());
+        if (fitPending) {
+            fit();
+        }
+        requestRedraw();
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return background != null ? background.getWidth() : 800;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return background != null ? background.getHeight() : 600;
+    }
+
+    void redraw() {
+        long start = System.nanoTime();
+        dirty = false;
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        if (background != null) {
+            gc.drawImage(background, -originX * scale, -originY * scale, background.getWidth() * scale,
+                    background.getHeight() * scale);
+        }
+        drawnPlaces = 0;
+        drawnClusters = 0;
+        drawnConnections = 0;
+
+        double right = originX + width / scale;
+        double bottom = originY + height / scale;
+        double margin = placeRadius() / scale;
+        clustered = index.countWithin(originX - margin, originY - margin, right + margin, bottom + margin)
+                > CLUSTER_LIMIT;
+        gc.setStroke(clustered ? Color.rgb(0, 0, 0, 0.3) : Color.BLACK);
+        gc.setLineWidth(clustered ? 1 : Math.max(0.5, Math.min(3, 3 * scale)));
+        gc.beginPath();
+        // Connections shorter than a pixel or two vanish under their places, so clusters skip them entirely.
+        if (clustered) {
+            collectClusters(right, bottom);
+        } else {
+            double reach = Math.max(margin, shortEdgeLength);
+            collectVisible(originX - reach, originY - reach, right + reach, bottom + reach);
+            for (int i = 0; i < visibleCount; i++) {
+                for (int edge = firstEdge[visibleSlots[i]]; edge >= 0; edge = nextEdge[edge]) {
+                    strokeEdge(gc, edge, right, bottom);
+                }
+            }
+        }
+        for (int i = 0; i < longEdgeCount; i++) {
+            strokeEdge(gc, longEdges[i], right, bottom);
+        }
+        gc.stroke();
+
+        if (clustered) {
+            drawClusters(gc);
+        } else {
+            drawPlaces(gc, right, bottom);
+        }
+        frameNanos = System.nanoTime() - start;
+    }
+
+    private void collectVisible(double left, double top, double right, double bottom) {
+        visibleCount = 0;
+        index.forEachWithin(left, top, right, bottom, slot -> {
+            if (visibleCount == visibleSlots.length) {
+                visibleSlots = Arrays.copyOf(visibleSlots, visibleCount * 2);
+            }
+            visibleSlots[visibleCount++] = slot;
+        });
+    }
+
+    // Each cluster is one quadtree square about CLUSTER_PIXELS across, reported from its stored centroid.
+    private void collectClusters(double right, double bottom) {
+        clusterCount = 0;
+        index.forEachCluster(originX, originY, right, bottom, CLUSTER_PIXELS / scale, (count, x, y) -> {
+            if (clusterCount == clusterSizes.length) {
+                clusterXs = Arrays.copyOf(clusterXs, clusterCount * 2);
+                clusterYs = Arrays.copyOf(clusterYs, clusterCount * 2);
+                clusterSizes = Arrays.copyOf(clusterSizes, clusterCount * 2);
+            }
+            clusterXs[clusterCount] = x;
+            clusterYs[clusterCount] = y;
+            clusterSizes[clusterCount++] = count;
+        });
+    }
+
+    private void strokeEdge(GraphicsContext gc, int edge, double right, double bottom) {
+        int from = edgeFrom[edge];
+        if (from < 0) {
+            return;
+        }
+        int to = edgeTo[edge];
+        if (places[from] == null || places[to] == null
+                || Math.max(xs[from], xs[to]) < originX || Math.min(xs[from], xs[to]) > right
+                || Math.max(ys[from], ys[to]) < originY || Math.min(ys[from], ys[to]) > bottom) {
+            return;
+        }
+        gc.moveTo((xs[from] - originX) * scale, (ys[from] - originY) * scale);
+        gc.lineTo((xs[to] - originX) * scale, (ys[to] - originY) * scale);
+        // Paths are stroked in batches so no single path grows with the size of the map.
+        if (++drawnConnections % PATH_BATCH == 0) {
+            gc.stroke();
+            gc.beginPath();
+        }
+    }
+
+    private void drawPlaces(GraphicsContext gc, double right, double bottom) {
+        double radius = placeRadius();
+        double margin = radius / scale;
+        gc.setFill(Color.BLUE);
+        for (int i = 0; i < visibleCount; i++) {
+            int slot = visibleSlots[i];
+            double x = xs[slot];
+            double y = ys[slot];
+            if (x < originX - margin || x > right + margin || y < originY - margin || y > bottom + margin
+                    || selected.contains(places[slot])) {
+                continue;
+            }
+            fillPlace(gc, (x - originX) * scale, (y - originY) * scale, radius);
+            drawnPlaces++;
+        }
+        gc.setFill(Color.RED);
+        for (T place : selected) {
+            fillPlace(gc, (place.getX() - originX) * scale, (place.getY() - originY) * scale, radius);
+        }
+        if (drawnPlaces + selected.size() <= LABEL_LIMIT) {
+            gc.setFill(Color.BLACK);
+            for (int i = 0; i < visibleCount; i++) {
+                int slot = visibleSlots[i];
+                double x = xs[slot];
+                double y = ys[slot];
+                if (x >= originX - margin && x <= right + margin && y >= originY - margin && y <= bottom + margin) {
+                    gc.fillText(places[slot].getName(), (x - originX) * scale + radius, (y - originY) * scale);
+                }
+            }
+        }
+    }
+
+    private static void fillPlace(GraphicsContext gc, double x, double y, double radius) {
+        if (radius <= MIN_PLACE_RADIUS) {
+            gc.fillRect(x - radius, y - radius, radius * 2, radius * 2);
+        } else {
+            gc.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+        }
+    }
+
+    private void drawClusters(GraphicsContext gc) {
+        boolean labels = clusterCount <= LABEL_LIMIT;
+        for (int i = 0; i < clusterCount; i++) {
+            double x = (clusterXs[i] - originX) * scale;
+            double y = (clusterYs[i] - originY) * scale;
+            double radius = Math.min(CLUSTER_PIXELS / 2, 3 + 2 * Math.log10(clusterSizes[i]));
+            gc.setFill(Color.rgb(0, 0, 255, 0.6));
+            gc.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+            if (labels && clusterSizes[i] > 1) {
+                gc.setFill(Color.BLACK);
+                gc.fillText(Integer.toString(clusterSizes[i]), x + radius, y);
+            }
+            drawnPlaces += clusterSizes[i];
+            drawnClusters++;
+        }
+    }
+}
@@ -0,0 +1,719 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+public class MapGenerator {
+    public enum Layout {
+        GEOMETRIC, GRID
+    }
+
+    public enum Weights {
+        DISTANCE, UNIFORM
+    }
+
+    public static class Summary {
+        private final long places;
+        private final long connections;
+        private final long bytes;
+        private final long nanos;
+
+        private Summary(long places, long connections, long bytes, long nanos) {
+            this.places = places;
+            this.connections = connections;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getPlaces() {
+            return places;
+        }
+
+        public long getConnections() {
+            return connections;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("generated %d places and %d connections (%.1f MB) in %.1fms", places, connections,
+                    bytes / 1048576.0, nanos / 1e6);
+        }
+    }
+
+    private static class Place {
+        private long a;
+        private long b;
+        private double x;
+        private double y;
+
+        private void set(long a, long b, double x, double y) {
+            this.a = a;
+            this.b = b;
+            this.x = x;
+            this.y = y;
+        }
+
+        private Place copy() {
+            Place copy = new Place();
+            copy.set(a, b, x, y);
+            return copy;
+        }
+    }
+
+    private static class Cell {
+        private long index = -1;
+        private int count;
+        private double[] xs = new double[16];
+        private double[] ys = new double[16];
+    }
+
+    // Separate streams keep places, ground roads, hubs and spokes independent of each other's settings.
+    private static final long PLACES = 1;
+    private static final long ROADS = 2;
+    private static final long HUBS = 3;
+    private static final long SPOKES = 4;
+
+    private final Layout layout;
+    private final long places;
+    private final long seed;
+    private double width;
+    private double height;
+    private String background = "file:europa.gif";
+    private double degree = 6;
+    private int hubs;
+    private double spokeShare = 0.02;
+    private final Map<String, double[]> transports = new LinkedHashMap<>();
+    private String airline = "Airplane";
+    private double airlineSpeed = 40;
+    private Weights weights = Weights.DISTANCE;
+    private int minWeight = 1;
+    private int maxWeight = 10000;
+    private double jitter = 0.25;
+
+    private int cellsX;
+    private int cellsY;
+    private double cellWidth;
+    private double cellHeight;
+    private double radius;
+    private double meanPerCell;
+    private long columns;
+    private double spacingX;
+    private double spacingY;
+    private double downShare;
+    private double diagonalShare;
+    private double totalShare;
+
+    private final StringBuilder line = new StringBuilder(128);
+    private long connections;
+
+    public MapGenerator(Layout layout, long places, long seed) {
+        if (places < 1) {
+            throw new IllegalArgumentException("A map needs at least one place");
+        }
+        this.layout = Objects.requireNonNull(layout);
+        this.places = places;
+        this.seed = seed;
+        // By default the map grows with the place count, so a thousand places sit about as densely as on europa.gif.
+        double scale = Math.max(1, Math.sqrt(places / 1000.0));
+        this.width = 618 * scale;
+        this.height = 729 * scale;
+        this.hubs = (int) Math.min(1000, Math.sqrt(places) / 10);
+        transports.put("Train", new double[]{0.8, 10});
+        transports.put("Boat", new double[]{0.2, 5});
+    }
+
+    public void setMapSize(double width, double height) {
+        if (!(width > 0) || !(height > 0)) {
+            throw new IllegalArgumentException("Map size must be positive");
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public void setBackground(String background) {
+        if (background.indexOf('\n') >= 0 || background.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Background cannot span lines");
+        }
+        this.background = background;
+    }
+
+    public void setDegree(double degree) {
+        if (!(degree > 0)) {
+            throw new IllegalArgumentException("Degree must be positive");
+        }
+        this.degree = degree;
+    }
+
+    public void setHubs(int hubs, double spokeShare) {
+        if (hubs < 0 || spokeShare < 0 || spokeShare > 1) {
+            throw new IllegalArgumentException();
+        }
+        this.hubs = hubs;
+        this.spokeShare = spokeShare;
+    }
+
+    public void clearTransports() {
+        transports.clear();
+    }
+
+    // Ground connections pick a transport in proportion to its share; speed is map units per unit of weight.
+    public void setTransport(String name, double share, double speed) {
+        validateName(name);
+        if (share < 0 || !(speed > 0)) {
+            throw new IllegalArgumentException("Share cannot be negative and speed must be positive");
+        }
+        transports.put(name, new double[]{share, speed});
+    }
+
+    public void setAirline(String name, double speed) {
+        validateName(name);
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        this.airline = name;
+        this.airlineSpeed = speed;
+    }
+
+    public void setWeights(Weights weights, int minWeight, int maxWeight, double jitter) {
+        if (minWeight < 0 || maxWeight < minWeight || jitter < 0) {
+            throw new IllegalArgumentException("Weights need 0 <= min <= max and a non-negative jitter");
+        }
+        this.weights = Objects.requireNonNull(weights);
+        this.minWeight = minWeight;
+        this.maxWeight = maxWeight;
+        this.jitter = jitter;
+    }
+
+    private static void validateName(String name) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Transport name cannot be empty");
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isLetter(name.charAt(i))) {
+                throw new IllegalArgumentException("Transport name can only contain letters: " + name);
+            }
+        }
+    }
+
+    public Summary write(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            long written = write(out);
+            out.flush();
+            return new Summary(written, connections, Files.size(file), System.nanoTime() - start);
+        }
+    }
+
+    public long write(Writer out) throws IOException {
+        totalShare = 0;
+        for (double[] transport : transports.values()) {
+            totalShare += transport[0];
+        }
+        if (!(totalShare > 0)) {
+            throw new IllegalStateException("No ground transport has a positive share");
+        }
+        prepare();
+        connections = 0;
+        out.write(background);
+        out.write('\n');
+        long written = writePlaces(out);
+        out.write('\n');
+        if (layout == Layout.GEOMETRIC) {
+            writeGeometricRoads(out);
+        } else {
+            writeGridRoads(out);
+        }
+        writeAirline(out);
+        return written;
+    }
+
+    private void prepare() {
+        double density = places / (width * height);
+        if (layout == Layout.GEOMETRIC) {
+            // Two places are neighbours within a radius chosen so the expected degree matches;
+            // cells at least that wide mean every neighbour is in the same or an adjacent cell.
+            radius = Math.sqrt(degree / (Math.PI * density));
+            cellsX = (int) Math.max(1, Math.min(1 << 20, Math.floor(width / radius)));
+            cellsY = (int) Math.max(1, Math.min(1 << 20, Math.floor(height / radius)));
+            cellWidth = width / cellsX;
+            cellHeight = height / cellsY;
+            meanPerCell = (double) places / ((long) cellsX * cellsY);
+        } else {
+            columns = Math.max(1, Math.min(places, Math.round(Math.sqrt(places * width / height))));
+            long rows = (places + columns - 1) / columns;
+            spacingX = width / columns;
+            spacingY = height / rows;
+            // Every place has a road east; roads south and diagonal are added until the mean degree matches.
+            downShare = Math.max(0, Math.min(1, degree / 2 - 1));
+            diagonalShare = Math.max(0, Math.min(1, degree / 2 - 2));
+        }
+    }
+
+    private long writePlaces(Writer out) throws IOException {
+        long written = 0;
+        if (layout == Layout.GEOMETRIC) {
+            Cell cell = new Cell();
+            for (long index = 0; index < (long) cellsX * cellsY; index++) {
+                fill(cell, index);
+                for (int k = 0; k < cell.count; k++) {
+                    writePlace(out, written++, index, k, cell.xs[k], cell.ys[k]);
+                }
+            }
+        } else {
+            Place place = new Place();
+            for (long index = 0; index < places; index++) {
+                gridPlace(index, place);
+                writePlace(out, written++, place.a, place.b, place.x, place.y);
+            }
+        }
+        return written;
+    }
+
+    private void writePlace(Writer out, long written, long a, long b, double x, double y) throws IOException {
+        line.setLength(0);
+        if (written > 0) {
+            line.append(';');
+        }
+        name(a, b).append(';');
+        coordinate(x).append(';');
+        coordinate(y);
+        out.append(line);
+    }
+
+    private StringBuilder name(long a, long b) {
+        return line.append(layout == Layout.GEOMETRIC ? 'P' : 'G').append(a).append('_').append(b);
+    }
+
+    private StringBuilder coordinate(double value) {
+        long tenths = Math.round(value * 10);
+        return line.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    private void fill(Cell cell, long index) {
+        if (cell.index == index) {
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(hash(PLACES, index));
+        int count = poisson(random, meanPerCell);
+        if (count > cell.xs.length) {
+            cell.xs = new double[Math.max(count, cell.xs.length * 2)];
+            cell.ys = new double[cell.xs.length];
+        }
+        long cx = index % cellsX;
+        long cy = index / cellsX;
+        for (int k = 0; k < count; k++) {
+            cell.xs[k] = (cx + random.nextDouble()) * cellWidth;
+            cell.ys[k] = (cy + random.nextDouble()) * cellHeight;
+        }
+        cell.count = count;
+        cell.index = index;
+    }
+
+    private static int poisson(SplittableRandom random, double mean) {
+        if (mean > 30) {
+            return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * gaussian(random)));
+        }
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    private void gridPlace(long index, Place place) {
+        SplittableRandom random = new SplittableRandom(hash(PLACES, index));
+        long row = index / columns;
+        long column = index % columns;
+        double x = (column + 0.2 + 0.6 * random.nextDouble()) * spacingX;
+        double y = (row + 0.2 + 0.6 * random.nextDouble()) * spacingY;
+        place.set(row, column, x, y);
+    }
+
+    private void writeGeometricRoads(Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(hash(ROADS, 0));
+        Cell here = new Cell();
+        Cell there = new Cell();
+        double limit = radius * radius;
+        // Pairs inside a cell and towards four of the eight neighbours cover every pair exactly once.
+        int[][] neighbours = {{1, 0}, {-1, 1}, {0, 1}, {1, 1}};
+        for (long index = 0; index < (long) cellsX * cellsY; index++) {
+            fill(here, index);
+            if (here.count == 0) {
+                continue;
+            }
+            for (int i = 0; i < here.count; i++) {
+                for (int j = i + 1; j < here.count; j++) {
+                    road(out, random, limit, index, i, here.xs[i], here.ys[i], index, j, here.xs[j], here.ys[j]);
+                }
+            }
+            long cx = index % cellsX;
+            long cy = index / cellsX;
+            for (int[] offset : neighbours) {
+                long nx = cx + offset[0];
+                long ny = cy + offset[1];
+                if (nx < 0 || nx >= cellsX || ny >= cellsY) {
+                    continue;
+                }
+                long other = ny * cellsX + nx;
+                fill(there, other);
+                for (int i = 0; i < here.count; i++) {
+                    for (int j = 0; j < there.count; j++) {
+                        road(out, random, limit, index, i, here.xs[i], here.ys[i], other, j, there.xs[j], there.ys[j]);
+                    }
+                }
+            }
+        }
+    }
+
+    private void road(Writer out, SplittableRandom random, double limit, long a1, long b1, double x1, double y1,
+                      long a2, long b2, double x2, double y2) throws IOException {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        if (dx * dx + dy * dy <= limit) {
+            ground(out, random, a1, b1, a2, b2, Math.sqrt(dx * dx + dy * dy));
+        }
+    }
+
+    private void writeGridRoads(Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(hash(ROADS, 0));
+        Place place = new Place();
+        Place other = new Place();
+        for (long index = 0; index < places; index++) {
+            long column = index % columns;
+            // Every draw happens whether or not the road exists, so one road never shifts the dice for the next.
+            boolean down = column == 0 || random.nextDouble() < downShare;
+            boolean diagonal = random.nextDouble() < diagonalShare;
+            gridPlace(index, place);
+            if (column + 1 < columns && index + 1 < places) {
+                gridRoad(out, random, place, other, index + 1);
+            }
+            if (down && index + columns < places) {
+                gridRoad(out, random, place, other, index + columns);
+            }
+            if (diagonal && column + 1 < columns && index + columns + 1 < places) {
+                gridRoad(out, random, place, other, index + columns + 1);
+            }
+        }
+    }
+
+    private void gridRoad(Writer out, SplittableRandom random, Place place, Place other, long index) throws IOException {
+        gridPlace(index, other);
+        ground(out, random, place.a, place.b, other.a, other.b, distance(place, other));
+    }
+
+    private void ground(Writer out, SplittableRandom random, long a1, long b1, long a2, long b2, double distance)
+            throws IOException {
+        double pick = random.nextDouble() * totalShare;
+        String name = null;
+        double speed = 0;
+        for (Map.Entry<String, double[]> transport : transports.entrySet()) {
+            name = transport.getKey();
+            speed = transport.getValue()[1];
+            pick -= transport.getValue()[0];
+            if (pick < 0) {
+                break;
+            }
+        }
+        connection(out, a1, b1, a2, b2, name, weight(random, distance, speed));
+    }
+
+    private void connection(Writer out, long a1, long b1, long a2, long b2, String name, int weight)
+            throws IOException {
+        line.setLength(0);
+        name(a1, b1).append(';');
+        name(a2, b2).append(';').append(name).append(';').append(weight).append('\n');
+        out.append(line);
+        connections++;
+    }
+
+    private int weight(SplittableRandom random, double distance, double speed) {
+        if (weights == Weights.UNIFORM) {
+            return minWeight + random.nextInt(maxWeight - minWeight + 1);
+        }
+        double value = distance / speed * Math.exp(jitter * gaussian(random));
+        return (int) Math.max(minWeight, Math.min(maxWeight, Math.round(value)));
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private void writeAirline(Writer out) throws IOException {
+        List<Place> hubPlaces = selectHubs();
+        if (hubPlaces.isEmpty()) {
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(hash(SPOKES, 0));
+        for (int i = 0; i < hubPlaces.size(); i++) {
+            for (int j = i + 1; j < hubPlaces.size(); j++) {
+                flight(out, random, hubPlaces.get(i), hubPlaces.get(j));
+            }
+        }
+        Place place = new Place();
+        forEachPlace(place, () -> {
+            if (random.nextDouble() >= spokeShare) {
+                return;
+            }
+            Place nearest = null;
+            double best = Double.POSITIVE_INFINITY;
+            for (Place hub : hubPlaces) {
+                double distance = distance(place, hub);
+                if (distance < best) {
+                    best = distance;
+                    nearest = hub;
+                }
+            }
+            if (nearest.a != place.a || nearest.b != place.b) {
+                flight(out, random, place, nearest);
+            }
+        });
+    }
+
+    private interface PlaceVisitor {
+        void visit() throws IOException;
+    }
+
+    private void forEachPlace(Place place, PlaceVisitor visitor) throws IOException {
+        if (layout == Layout.GEOMETRIC) {
+            Cell cell = new Cell();
+            for (long index = 0; index < (long) cellsX * cellsY; index++) {
+                fill(cell, index);
+                for (int k = 0; k < cell.count; k++) {
+                    place.set(index, k, cell.xs[k], cell.ys[k]);
+                    visitor.visit();
+                }
+            }
+        } else {
+            for (long index = 0; index < places; index++) {
+                gridPlace(index, place);
+                visitor.visit();
+            }
+        }
+    }
+
+    private void flight(Writer out, SplittableRandom random, Place from, Place to) throws IOException {
+        // Places close enough for a ground road never also get a flight, so no pair is written twice.
+        boolean local = layout == Layout.GEOMETRIC
+                ? distance(from, to) <= radius
+                : Math.abs(from.a - to.a) <= 1 && Math.abs(from.b - to.b) <= 1;
+        if (!local) {
+            connection(out, from.a, from.b, to.a, to.b, airline, weight(random, distance(from, to), airlineSpeed));
+        }
+    }
+
+    private List<Place> selectHubs() {
+        SplittableRandom random = new SplittableRandom(hash(HUBS, 0));
+        Map<Long, Place> selected = new LinkedHashMap<>();
+        for (int attempt = 0; attempt < hubs * 4 && selected.size() < hubs; attempt++) {
+            Place hub = nearestPlace(random.nextDouble() * width, random.nextDouble() * height);
+            if (hub != null) {
+                selected.putIfAbsent(hub.a * 1_000_003L + hub.b, hub);
+            }
+        }
+        return new ArrayList<>(selected.values());
+    }
+
+    private Place nearestPlace(double x, double y) {
+        Place nearest = new Place();
+        if (layout == Layout.GRID) {
+            long rows = (places + columns - 1) / columns;
+            long row = Math.max(0, Math.min(rows - 1, (long) (y / spacingY)));
+            long column = Math.max(0, Math.min(columns - 1, (long) (x / spacingX)));
+            long index = row * columns + column;
+            gridPlace(index < places ? index : index - columns, nearest);
+            return nearest;
+        }
+        long cx = Math.max(0, Math.min(cellsX - 1, (long) (x / cellWidth)));
+        long cy = Math.max(0, Math.min(cellsY - 1, (long) (y / cellHeight)));
+        Cell cell = new Cell();
+        double best = Double.POSITIVE_INFINITY;
+        boolean found = false;
+        // Scanning one ring past the first place found is close enough for picking hubs.
+        for (int ring = 0; ring <= Math.max(cellsX, cellsY); ring++) {
+            for (long ny = cy - ring; ny <= cy + ring; ny++) {
+                for (long nx = cx - ring; nx <= cx + ring; nx++) {
+                    if (Math.max(Math.abs(nx - cx), Math.abs(ny - cy)) != ring
+                            || nx < 0 || ny < 0 || nx >= cellsX || ny >= cellsY) {
+                        continue;
+                    }
+                    long index = ny * cellsX + nx;
+                    fill(cell, index);
+                    for (int k = 0; k < cell.count; k++) {
+                        double dx = cell.xs[k] - x;
+                        double dy = cell.ys[k] - y;
+                        if (dx * dx + dy * dy < best) {
+                            best = dx * dx + dy * dy;
+                            nearest.set(index, k, cell.xs[k], cell.ys[k]);
+                        }
+                    }
+                }
+            }
+            if (found) {
+                break;
+            }
+            found = best < Double.POSITIVE_INFINITY;
+        }
+        return found ? nearest.copy() : null;
+    }
+
+    private static double distance(Place from, Place to) {
+        return Math.hypot(from.x - to.x, from.y - to.y);
+    }
+
+    private long hash(long stream, long key) {
+        return mix(mix(seed + stream * 0x9E3779B97F4A7C15L) + key);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static void usage() {
+        System.err.println("usage: MapGenerator [--out file] [--layout geometric|grid] [--places n] [--seed n]");
+        System.err.println("                    [--degree d] [--hubs n] [--spokes share] [--width w --height h]");
+        System.err.println("                    [--background url] [--transport name=share:speed]... [--airline name:speed]");
+        System.err.println("                    [--weights distance|uniform] [--min-weight n] [--max-weight n] [--jitter s]");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path out = Paths.get("generated.graph");
+        Layout layout = Layout.GEOMETRIC;
+        long places = 100_000;
+        long seed = 1;
+        Double degree = null;
+        Integer hubs = null;
+        Double spokes = null;
+        Double width = null;
+        Double height = null;
+        String background = null;
+        List<String> transports = new ArrayList<>();
+        String airline = null;
+        Weights weights = Weights.DISTANCE;
+        int minWeight = 1;
+        int maxWeight = 10000;
+        double jitter = 0.25;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out":
+                        out = Paths.get(args[++i]);
+                        break;
+                    case "--layout":
+                        layout = Layout.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--places":
+                        places = Long.parseLong(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--degree":
+                        degree = Double.parseDouble(args[++i]);
+                        break;
+                    case "--hubs":
+                        hubs = Integer.parseInt(args[++i]);
+                        break;
+                    case "--spokes":
+                        spokes = Double.parseDouble(args[++i]);
+                        break;
+                    case "--width":
+                        width = Double.parseDouble(args[++i]);
+                        break;
+                    case "--height":
+                        height = Double.parseDouble(args[++i]);
+                        break;
+                    case "--background":
+                        background = args[++i];
+                        break;
+                    case "--transport":
+                        transports.add(args[++i]);
+                        break;
+                    case "--airline":
+                        airline = args[++i];
+                        break;
+                    case "--weights":
+                        weights = Weights.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--min-weight":
+                        minWeight = Integer.parseInt(args[++i]);
+                        break;
+                    case "--max-weight":
+                        maxWeight = Integer.parseInt(args[++i]);
+                        break;
+                    case "--jitter":
+                        jitter = Double.parseDouble(args[++i]);
+                        break;
+                    default:
+                        usage();
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            usage();
+        }
+
+        MapGenerator generator;
+        try {
+            generator = new MapGenerator(layout, places, seed);
+            if (width != null || height != null) {
+                if (width == null || height == null) {
+                    usage();
+                }
+                generator.setMapSize(width, height);
+            }
+            if (degree != null) {
+                generator.setDegree(degree);
+            }
+            if (hubs != null || spokes != null) {
+                generator.setHubs(hubs != null ? hubs : generator.hubs, spokes != null ? spokes : generator.spokeShare);
+            }
+            if (background != null) {
+                generator.setBackground(background);
+            }
+            if (!transports.isEmpty()) {
+                generator.clearTransports();
+                for (String transport : transports) {
+                    int equals = transport.indexOf('=');
+                    int colon = transport.indexOf(':', equals);
+                    if (equals < 0 || colon < 0) {
+                        usage();
+                    }
+                    generator.setTransport(transport.substring(0, equals),
+                            Double.parseDouble(transport.substring(equals + 1, colon)),
+                            Double.parseDouble(transport.substring(colon + 1)));
+                }
+            }
+            if (airline != null) {
+                int colon = airline.indexOf(':');
+                if (colon < 0) {
+                    usage();
+                }
+                generator.setAirline(airline.substring(0, colon), Double.parseDouble(airline.substring(colon + 1)));
+            }
+            generator.setWeights(weights, minWeight, maxWeight, jitter);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return;
+        }
+        System.err.println(generator.write(out));
+    }
+}
@@ -0,0 +1,369 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+public class MappedGraph implements Graph<String> {
+    private static final long MAX_MAPPING = Integer.MAX_VALUE;
+
+    private final int placeCount;
+    private final int arcCount;
+    private final int hashSlots;
+    private final String background;
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer names;
+    private final IntBuffer hash;
+    private final DoubleBuffer x;
+    private final DoubleBuffer y;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer weights;
+    private final IntBuffer nameIds;
+    private final IntBuffer edgeNameOffsets;
+    private final ByteBuffer edgeNames;
+    private final long fileBytes;
+
+    private MappedGraph(ByteBuffer header, ByteBuffer[] sections, long fileBytes) {
+        placeCount = header.getInt(BinaryGraphFile.PLACES_AT);
+        arcCount = header.getInt(BinaryGraphFile.ARCS_AT);
+        hashSlots = header.getInt(BinaryGraphFile.HASH_SLOTS_AT);
+        background = StandardCharsets.UTF_8.decode(sections[BinaryGraphFile.BACKGROUND]).toString();
+        nameOffsets = sections[BinaryGraphFile.PLACE_NAME_OFFSETS].asIntBuffer();
+        names = sections[BinaryGraphFile.PLACE_NAMES];
+        hash = sections[BinaryGraphFile.PLACE_HASH].asIntBuffer();
+        x = sections[BinaryGraphFile.X].asDoubleBuffer();
+        y = sections[BinaryGraphFile.Y].asDoubleBuffer();
+        offsets = sections[BinaryGraphFile.ARC_OFFSETS].asIntBuffer();
+        targets = sections[BinaryGraphFile.ARC_TARGETS].asIntBuffer();
+        weights = sections[BinaryGraphFile.ARC_WEIGHTS].asIntBuffer();
+        nameIds = sections[BinaryGraphFile.ARC_NAMES].asIntBuffer();
+        edgeNameOffsets = sections[BinaryGraphFile.EDGE_NAME_OFFSETS].asIntBuffer();
+        edgeNames = sections[BinaryGraphFile.EDGE_NAMES];
+        this.fileBytes = fileBytes;
+    }
+
+    // Only the header checksum is checked by default; hashing the payload would read the whole mapping up front.
+    public static MappedGraph open(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    public static MappedGraph open(Path path, boolean verifyPayload) throws IOException {
+        try (FileChannel file = FileChannel.open(path)) {
+            long size = file.size();
+            if (size < BinaryGraphFile.HEADER_BYTES) {
+                throw corrupt(path, "truncated header");
+            }
+            ByteBuffer header = ByteBuffer.allocate(BinaryGraphFile.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (file.read(header, header.position()) < 0) {
+                    throw corrupt(path, "truncated header");
+                }
+            }
+            if (header.getInt(BinaryGraphFile.MAGIC_AT) != BinaryGraphFile.MAGIC) {
+                throw corrupt(path, "not a binary graph file");
+            }
+            if (header.getInt(BinaryGraphFile.VERSION_AT) != BinaryGraphFile.VERSION) {
+                throw corrupt(path, "unsupported version " + header.getInt(BinaryGraphFile.VERSION_AT));
+            }
+            if (header.getInt(BinaryGraphFile.HEADER_CRC_AT) != BinaryGraphFile.headerChecksum(header)) {
+                throw corrupt(path, "header checksum mismatch");
+            }
+            int places = header.getInt(BinaryGraphFile.PLACES_AT);
+            int arcs = header.getInt(BinaryGraphFile.ARCS_AT);
+            int edgeNameCount = header.getInt(BinaryGraphFile.EDGE_NAMES_AT);
+            int slots = header.getInt(BinaryGraphFile.HASH_SLOTS_AT);
+            long[] expected = new long[BinaryGraphFile.SECTION_COUNT];
+            Arrays.fill(expected, -1);
+            expected[BinaryGraphFile.PLACE_NAME_OFFSETS] = 4L * (places + 1);
+            expected[BinaryGraphFile.PLACE_HASH] = 4L * slots;
+            expected[BinaryGraphFile.X] = 8L * places;
+            expected[BinaryGraphFile.Y] = 8L * places;
+            expected[BinaryGraphFile.ARC_OFFSETS] = 4L * (places + 1);
+            expected[BinaryGraphFile.ARC_TARGETS] = 4L * arcs;
+            expected[BinaryGraphFile.ARC_WEIGHTS] = 4L * arcs;
+            expected[BinaryGraphFile.ARC_NAMES] = 4L * arcs;
+            expected[BinaryGraphFile.EDGE_NAME_OFFSETS] = 4L * (edgeNameCount + 1);
+            if (places < 0 || arcs < 0 || edgeNameCount < 0 || Integer.bitCount(slots) != 1 || slots < places) {
+                throw corrupt(path, "bad counts");
+            }
+
+            ByteBuffer[] sections = new ByteBuffer[BinaryGraphFile.SECTION_COUNT];
+            for (int section = 0; section < sections.length; section++) {
+                long offset = header.getLong(BinaryGraphFile.SECTIONS_AT + 16 * section);
+                long length = header.getLong(BinaryGraphFile.SECTIONS_AT + 16 * section + 8);
+                if (offset < BinaryGraphFile.HEADER_BYTES || length < 0 || length > MAX_MAPPING
+                        || offset + length > size || (expected[section] >= 0 && expected[section] != length)) {
+                    throw corrupt(path, "bad section " + section);
+                }
+                sections[section] = file.map(FileChannel.MapMode.READ_ONLY, offset, length)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            if (verifyPayload && header.getInt(BinaryGraphFile.PAYLOAD_CRC_AT) != payloadChecksum(file, size)) {
+                throw corrupt(path, "payload checksum mismatch");
+            }
+            return new MappedGraph(header, sections, size);
+        }
+    }
+
+    private static int payloadChecksum(FileChannel file, long size) throws IOException {
+        CRC32C checksum = new CRC32C();
+        for (long at = BinaryGraphFile.HEADER_BYTES; at < size; at += MAX_MAPPING) {
+            checksum.update(file.map(FileChannel.MapMode.READ_ONLY, at, Math.min(MAX_MAPPING, size - at)));
+        }
+        return (int) checksum.getValue();
+    }
+
+    private static IOException corrupt(Path path, String reason) {
+        return new IOException(path + ": " + reason);
+    }
+
+    public String getBackground() {
+        return background;
+    }
+
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    public int nodeCount() {
+        return placeCount;
+    }
+
+    public int arcCount() {
+        return arcCount;
+    }
+
+    public int indexOf(String node) {
+        byte[] key = node.getBytes(StandardCharsets.UTF_8);
+        int mask = hashSlots - 1;
+        for (int slot = BinaryGraphFile.hash(key, 0, key.length) & mask; hash.get(slot) != 0; slot = (slot + 1) & mask) {
+            int place = hash.get(slot) - 1;
+            if (nameEquals(place, key)) {
+                return place;
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(int place, byte[] key) {
+        int begin = nameOffsets.get(place);
+        int end = nameOffsets.get(place + 1);
+        if (end - begin != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (names.get(begin + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String nodeAt(int index) {
+        return decode(names, nameOffsets.get(index), nameOffsets.get(index + 1));
+    }
+
+    public double getX(int index) {
+        return x.get(index);
+    }
+
+    public double getY(int index) {
+        return y.get(index);
+    }
+
+    public int arcBegin(int node) {
+        return offsets.get(node);
+    }
+
+    public int arcEnd(int node) {
+        return offsets.get(node + 1);
+    }
+
+    public int arcTarget(int arc) {
+        return targets.get(arc);
+    }
+
+    public int arcWeight(int arc) {
+        return weights.get(arc);
+    }
+
+    public String arcName(int arc) {
+        int id = nameIds.get(arc);
+        return decode(edgeNames, edgeNameOffsets.get(id), edgeNameOffsets.get(id + 1));
+    }
+
+    private static String decode(ByteBuffer bytes, int begin, int end) {
+        byte[] copy = new byte[end - begin];
+        bytes.get(begin, copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    public int findArc(int from, int to) {
+        int low = offsets.get(from);
+        int high = offsets.get(from + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int target = targets.get(mid);
+            if (target < to) {
+                low = mid + 1;
+            } else if (target > to) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public Edge<String> edgeAt(int from, int arc) {
+        return new Edge<>(nodeAt(from), nodeAt(targets.get(arc)), arcName(arc), weights.get(arc));
+    }
+
+    public void add(String node) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void connect(String node1, String node2, String name, int weight) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void setConnectionWeight(String node1, String node2, int weight) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void disconnect(String node1, String node2) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void remove(String node) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Set<String> getNodes() {
+        Set<String> nodes = new HashSet<>(placeCount * 4 / 3 + 1);
+        for (int place = 0; place < placeCount; place++) {
+            nodes.add(nodeAt(place));
+        }
+        return nodes;
+    }
+
+    public Collection<Edge<String>> getEdgesFrom(String node) {
+        int index = requireIndex(node);
+        List<Edge<String>> edges = new ArrayList<>(arcEnd(index) - arcBegin(index));
+        for (int arc = arcBegin(index); arc < arcEnd(index); arc++) {
+            edges.add(edgeAt(index, arc));
+        }
+        return edges;
+    }
+
+    public void forEachEdgeFrom(String node, Consumer<? super Edge<String>> action) {
+        int index = requireIndex(node);
+        for (int arc = arcBegin(index); arc < arcEnd(index); arc++) {
+            action.accept(edgeAt(index, arc));
+        }
+    }
+
+    public void forEachNeighbour(String node, NeighbourVisitor<? super String> visitor) {
+        int index = requireIndex(node);
+        for (int arc = arcBegin(index); arc < arcEnd(index); arc++) {
+            visitor.visit(nodeAt(targets.get(arc)), weights.get(arc));
+        }
+    }
+
+    public Edge<String> getEdgeBetween(String node1, String node2) {
+        int from = requireIndex(node1);
+        int to = requireIndex(node2);
+        int arc = findArc(from, to);
+        return arc < 0 ? null : edgeAt(from, arc);
+    }
+
+    public boolean pathExists(String from, String to) {
+        int source = indexOf(from);
+        int target = indexOf(to);
+        if (source < 0 || target < 0) {
+            return false;
+        }
+        if (source == target) {
+            return true;
+        }
+        boolean[] visited = new boolean[placeCount];
+        int[] queue = new int[placeCount];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        visited[source] = true;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int arc = offsets.get(current); arc < offsets.get(current + 1); arc++) {
+                int next = targets.get(arc);
+                if (next == target) {
+                    return true;
+                }
+                if (!visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    public List<Edge<String>> getPath(String from, String to) {
+        int source = indexOf(from);
+        int target = indexOf(to);
+        if (source < 0 || target < 0 || source == target) {
+            return null;
+        }
+
+        SearchContext context = SearchContext.acquire(SearchContext.FORWARD, placeCount);
+        IndexedHeap queue = context.heap();
+        context.reach(source, 0, -1, null);
+        queue.push(source, 0);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (current == target) {
+                return buildPath(context, source, target);
+            }
+            long distance = context.distance(current);
+            for (int arc = offsets.get(current); arc < offsets.get(current + 1); arc++) {
+                int next = targets.get(arc);
+                long newDistance = distance + weights.get(arc);
+                if (newDistance < context.distance(next)) {
+                    context.reach(next, newDistance, current, null);
+                    queue.pushOrDecrease(next, newDistance);
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<Edge<String>> buildPath(SearchContext context, int source, int target) {
+        List<Edge<String>> path = new ArrayList<>();
+        for (int current = target; current != source; current = context.parent(current)) {
+            int previous = context.parent(current);
+            path.add(edgeAt(previous, findArc(previous, current)));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    private int requireIndex(String node) {
+        int index = indexOf(node);
+        if (index < 0) {
+            throw new NoSuchElementException();
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MappedGraph[places=%d, arcs=%d, bytes=%d]", placeCount, arcCount, fileBytes);
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.*;
+
+public class PathCache<T> {
+    private final int capacity;
+    private final LinkedHashMap<Key<T>, Entry<T>> entries;
+    private final Map<Edge<T>, Set<Key<T>>> keysByEdge = new HashMap<>();
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public PathCache(int capacity, long version) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.version = version;
+        this.entries = new LinkedHashMap<Key<T>, Entry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key<T>, Entry<T>> eldest) {
+                if (size() > PathCache.this.capacity) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized List<Edge<T>> getPath(T from, T to, long graphVersion) {
+        Entry<T> entry = lookup(from, to, graphVersion);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.path;
+    }
+
+    public synchronized void putPath(T from, T to, List<Edge<T>> path, long graphVersion) {
+        if (graphVersion != version) {
+            return;
+        }
+        Key<T> key = new Key<>(from, to);
+        Entry<T> previous = entries.remove(key);
+        if (previous != null) {
+            unindex(key, previous);
+        }
+        // A known "no path" is stored as an empty list so it can be told apart from a miss.
+        List<Edge<T>> stored = path == null
+                ? Collections.<Edge<T>>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(path));
+        Entry<T> entry = new Entry<>(stored);
+        entries.put(key, entry);
+        for (Edge<T> edge : stored) {
+            keysByEdge.computeIfAbsent(edge, e -> new HashSet<>()).add(key);
+        }
+    }
+
+    public synchronized void retain(long graphVersion) {
+        version = graphVersion;
+    }
+
+    public synchronized void invalidateAll(long graphVersion) {
+        invalidations += entries.size();
+        entries.clear();
+        keysByEdge.clear();
+        version = graphVersion;
+    }
+
+    public synchronized void invalidateEdges(Collection<Edge<T>> edges, long graphVersion) {
+        // Paths that avoid a lengthened or removed edge are still shortest, so only their users go.
+        for (Edge<T> edge : edges) {
+            Set<Key<T>> keys = keysByEdge.remove(edge);
+            if (keys == null) {
+                continue;
+            }
+            for (Key<T> key : keys) {
+                Entry<T> entry = entries.remove(key);
+                if (entry != null) {
+                    unindex(key, entry);
+                    invalidations++;
+                }
+            }
+        }
+        version = graphVersion;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("PathCache[size=%d/%d, hits=%d, misses=%d, evictions=%d, invalidations=%d]",
+                entries.size(), capacity, hits, misses, evictions, invalidations);
+    }
+
+    private Entry<T> lookup(T from, T to, long graphVersion) {
+        if (graphVersion != version) {
+            invalidateAll(graphVersion);
+        }
+        return entries.get(new Key<>(from, to));
+    }
+
+    private void unindex(Key<T> key, Entry<T> entry) {
+        for (Edge<T> edge : entry.path) {
+            Set<Key<T>> keys = keysByEdge.get(edge);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByEdge.remove(edge);
+                }
+            }
+        }
+    }
+
+    private static final class Key<T> {
+        private final T from;
+        private final T to;
+
+        Key(T from, T to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key<?> key = (Key<?>) other;
+            return from.equals(key.from) && to.equals(key.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * from.hashCode() + to.hashCode();
+        }
+    }
+
+    private static final class Entry<T> {
+        private final List<Edge<T>> path;
+
+        Entry(List<Edge<T>> path) {
+            this.path = path;
+        }
+    }
+}
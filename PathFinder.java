@@ -3,6 +3,7 @@ import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
 import javafx.scene.Cursor;
 import javafx.scene.Group;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
@@ -19,13 +20,15 @@ import javafx.stage.Screen;
 import javafx.stage.Stage;
 import javafx.util.Pair;
 import java.io.*;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import javafx.embed.swing.SwingFXUtils;
 import javax.imageio.ImageIO;
 import javafx.scene.image.WritableImage;
@@ -34,6 +37,9 @@ import javafx.scene.layout.GridPane;
 public class PathFinder extends Application {
     private static final ButtonType CANCEL_BUTTON = new ButtonType("Cancel");
     private static final ButtonType OK_BUTTON = new ButtonType("OK");
+    // Past this many places the scene graph view slows to a crawl, so a loaded map switches to the canvas.
+    private static final int CANVAS_THRESHOLD = 2000;
+    private static final double PLACE_RADIUS = 10;
     private Scene scene;
     private boolean unsavedChanges = false;
     private String currentFilePath = null;
@@ -46,11 +52,17 @@ public class PathFinder extends Application {
     private List<T> selectedPlaces = new ArrayList<>();
     private ListGraph<T> graph = new ListGraph<>();
     private Map<String, T> nameToNodeMap = new HashMap<>();
-    private Set<String> existingConnections = new HashSet<>();
+    private Map<T, Circle> placeCircles = new HashMap<>();
     private Group drawingGroup;
+    private MapCanvas mapCanvas;
+    private CheckMenuItem canvasItem;
+    private GraphJournal journal;
 
     @Override
     public void start(Stage primaryStage) {
+        graph.setCoordinates(T::getX, T::getY);
+        graph.setRouteMode(RouteMode.A_STAR);
+
         Menu fileMenu = new Menu("File");
         fileMenu.setId("menuFile");
 
@@ -76,8 +88,17 @@ public class PathFinder extends Application {
 
         fileMenu.getItems().addAll(newMap, openItem, saveItem, saveImage, exitItem);
 
+        Menu viewMenu = new Menu("View");
+        viewMenu.setId("menuView");
+
+        canvasItem = new CheckMenuItem("Canvas Rendering");
+        canvasItem.setOnAction(e -> showView(canvasItem.isSelected()));
+        canvasItem.setId("menuCanvasRendering");
+
+        viewMenu.getItems().add(canvasItem);
+
         MenuBar menuBar = new MenuBar();
-        menuBar.getMenus().add(fileMenu);
+        menuBar.getMenus().addAll(fileMenu, viewMenu);
         menuBar.setId("menu");
 
         findPathButton = new Button("Find Path");
@@ -170,6 +191,7 @@ public class PathFinder extends Application {
         root.getChildren().addAll(menuBar, buttonContainerWrapper);
 
         drawingGroup = new Group();
+        drawingGroup.setOnMouseClicked(event -> selectPlaceAt(event.getX(), event.getY()));
         BorderPane borderPane = new BorderPane();
         borderPane.setCenter(drawingGroup);
         borderPane.setTop(root);
@@ -203,9 +225,15 @@ public class PathFinder extends Application {
 
             drawingGroup.getChildren().clear();
             drawingGroup.getChildren().add(0, backgroundImageView);
+            placeCircles.clear();
+            if (mapCanvas != null) {
+                mapCanvas.clear();
+                mapCanvas.setBackground(backgroundImage);
+            }
+            if (journal != null) journal.background(backgroundImage.getUrl());
 
-            if (((BorderPane) scene.getRoot()).getCenter() != drawingGroup) {
-                ((BorderPane) scene.getRoot()).setCenter(drawingGroup);
+            if (((BorderPane) scene.getRoot()).getCenter() != currentView()) {
+                ((BorderPane) scene.getRoot()).setCenter(currentView());
             }
 
             Screen screen = Screen.getPrimary();
@@ -238,6 +266,7 @@ public class PathFinder extends Application {
 
     private void clearSelected() {
         selectedPlaces.clear();
+        if (mapCanvas != null) mapCanvas.setSelected(selectedPlaces);
     }
 
     private void resetData() {
@@ -245,7 +274,7 @@ public class PathFinder extends Application {
         selectedPlaces.clear();
         graph.clear();
         nameToNodeMap.clear();
-        existingConnections.clear();
+        placeCircles.clear();
     }    
     
     private void openFile(Stage primaryStage) {
@@ -271,17 +300,73 @@ public class PathFinder extends Application {
     
         if (selectedFile != null) {
             drawingGroup.getChildren().clear();
-            try (BufferedReader reader = new BufferedReader(new FileReader(selectedFile))) {
-                String file = reader.readLine();
-                if (file == null) return;
-    
-                file = file.trim();
-                ImageView backgroundImageView = createBackgroundImageView(file);
-                if (backgroundImageView != null) drawingGroup.getChildren().add(0, backgroundImageView);
-    
-                readAndCreateNodes(reader);
-                readAndCreateEdges(reader);
+            try {
+                ImageView[] background = new ImageView[1];
+                resetData();
+                closeJournal();
+                HeapPeak.reset();
+                GraphBulkLoader.Result<T> loaded = GraphBulkLoader.load(selectedFile.toPath(), new GraphFileParser.PlaceBuilder<T>() {
+                    @Override
+                    public void background(String file) {
+                        background[0] = setBackground(file);
+                    }
+
+                    @Override
+                    public T place(String placeName, double x, double y) {
+                        return addPlace(placeName, x, y);
+                    }
+                }, ForkJoinPool.commonPool());
+                loaded.connectTo(graph);
+                for (int i = 0; i < loaded.size(); i++) {
+                    connections.add(new Edge<>(loaded.getFrom(i), loaded.getTo(i), loaded.getName(i), loaded.getWeight(i)));
+                }
+                showView(canvasItem.isSelected() || nameToNodeMap.size() > CANVAS_THRESHOLD);
+                GraphFileParser.Report report = loaded.getReport();
+                if (report.getBytes() == 0) return;
+                // Edits saved since the last full write live in the journal and are replayed on top.
+                journal = GraphJournal.open(selectedFile.toPath(), new GraphJournal.Replay() {
+                    @Override
+                    public void background(String file) {
+                        background[0] = setBackground(file);
+                    }
+
+                    @Override
+                    public void place(String placeName, double x, double y) {
+                        if (!nameToNodeMap.containsKey(placeName)) createPlace(placeName, x, y);
+                    }
+
+                    @Override
+                    public void connection(String from, String to, String name, int weight) {
+                        T place1 = nameToNodeMap.get(from);
+                        T place2 = nameToNodeMap.get(to);
+                        if (place1 == null || place2 == null || place1.equals(place2)) return;
+                        if (graph.getEdgeBetween(place1, place2) != null) {
+                            changeConnectionWeight(place1, place2, weight);
+                        } else {
+                            graph.connect(place1, place2, name, weight);
+                            createConnection(place1, place2, name, weight);
+                        }
+                    }
+
+                    @Override
+                    public void disconnection(String from, String to) {
+                        removeConnection(nameToNodeMap.get(from), nameToNodeMap.get(to));
+                    }
+
+                    @Override
+                    public void weight(String from, String to, int weight) {
+                        changeConnectionWeight(nameToNodeMap.get(from), nameToNodeMap.get(to), weight);
+                    }
+
+                    @Override
+                    public void removal(String placeName) {
+                        removePlace(placeName);
+                    }
+                });
+                ImageView backgroundImageView = background[0];
                 configureScene();
+                primaryStage.setTitle("PathFinder - " + selectedFile.getName() + " "
+                        + report.withPeakHeapBytes(HeapPeak.bytes()));
     
                 currentFilePath = selectedFile.getAbsolutePath();
                 unsavedChanges = false;
@@ -295,7 +380,7 @@ public class PathFinder extends Application {
                     primaryStage.setY(0);
                 }
     
-            } catch (FileNotFoundException fileNotFound) {
+            } catch (FileNotFoundException | NoSuchFileException fileNotFound) {
                 showAlert("The File Does Not Exist!");
             } catch (IOException ex) {
                 showAlert("An error occurred while reading the file");
@@ -304,62 +389,165 @@ public class PathFinder extends Application {
         }
     }                
     
-    private void readAndCreateNodes(BufferedReader reader) throws IOException {
-        String line = reader.readLine();
-        String[] cityParts = line.split(";");
-        for (int i = 0; i < cityParts.length; i += 3) {
-            String placeName = cityParts[i].trim();
-            double x = Double.parseDouble(cityParts[i + 1].trim());
-            double y = Double.parseDouble(cityParts[i + 2].trim());
-    
-            T newT = new T(placeName, x, y);
-            graph.add(newT);
-            nameToNodeMap.put(placeName, newT);
-    
-            Circle placeCircle = new Circle(x, y, 10, Color.BLUE);
-            Text placeText = new Text(x + 10, y, placeName);
-            drawingGroup.getChildren().addAll(placeCircle, placeText);
-            placeCircle.setId(placeName);
-    
-            placeCircle.setOnMouseClicked(event -> handlePlaceSelection(newT, placeCircle));
+    private T addPlace(String placeName, double x, double y) {
+        T newT = new T(placeName, x, y);
+        graph.add(newT);
+        nameToNodeMap.put(placeName, newT);
+        return newT;
+    }
+
+    private T createPlace(String placeName, double x, double y) {
+        T newT = addPlace(placeName, x, y);
+        showPlace(newT);
+        return newT;
+    }
+
+    private void showPlace(T place) {
+        if (mapCanvas != null) {
+            mapCanvas.addPlace(place);
+            return;
         }
-    }    
-    
-    private void readAndCreateEdges(BufferedReader reader) throws IOException {
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.split(";");
-            if (parts.length < 4) continue;
-    
-            T place1 = nameToNodeMap.get(parts[0].trim());
-            T place2 = nameToNodeMap.get(parts[1].trim());
-    
-            if (place1 != null && place2 != null) {
-                String connectionIdentifier = createConnectionIdentifier(place1.getName(), place2.getName());
-                if (existingConnections.contains(connectionIdentifier)) continue;
-    
-                existingConnections.add(connectionIdentifier);
-                String name = parts[2].trim();
-                int weight = Integer.parseInt(parts[3].trim());
-    
-                Edge<T> edge = new Edge<>(place1, place2, name, weight);
-                graph.connect(place1, place2, name, weight);
-                connections.add(edge);
-    
-                Line connectionLine = new Line(place1.getX(), place1.getY(), place2.getX(), place2.getY());
-                connectionLine.setStroke(Color.BLACK);
-                connectionLine.setStrokeWidth(3);
-                drawingGroup.getChildren().add(connectionLine);
+        Circle placeCircle = new Circle(place.getX(), place.getY(), PLACE_RADIUS, Color.BLUE);
+        Text placeText = new Text(place.getX() + PLACE_RADIUS, place.getY(), place.getName());
+        drawingGroup.getChildren().addAll(placeCircle, placeText);
+        placeCircle.setId(place.getName());
+        placeText.setId("text_" + place.getName());
+        placeCircles.put(place, placeCircle);
+    }
+
+    private void selectPlaceAt(double x, double y) {
+        // One range query on the graph's spatial index stands in for a click handler on every circle.
+        T hit = null;
+        double closest = PLACE_RADIUS * PLACE_RADIUS;
+        for (T place : graph.getNodesWithin(x - PLACE_RADIUS, y - PLACE_RADIUS, x + PLACE_RADIUS, y + PLACE_RADIUS)) {
+            double dx = place.getX() - x;
+            double dy = place.getY() - y;
+            if (dx * dx + dy * dy <= closest && placeCircles.containsKey(place)) {
+                hit = place;
+                closest = dx * dx + dy * dy;
             }
         }
-    }    
+        if (hit != null) handlePlaceSelection(hit, placeCircles.get(hit));
+    }
 
-    private String createConnectionIdentifier(String place1, String place2) {
-        return place1.compareTo(place2) < 0 ? place1 + "->" + place2 : place2 + "->" + place1;
+    private void createConnection(T place1, T place2, String name, int weight) {
+        connections.add(new Edge<>(place1, place2, name, weight));
+        showConnection(place1, place2);
     }
-    
+
+    private void showConnection(T place1, T place2) {
+        if (mapCanvas != null) {
+            mapCanvas.addConnection(place1, place2);
+            return;
+        }
+        Line connectionLine = new Line(place1.getX(), place1.getY(), place2.getX(), place2.getY());
+        connectionLine.setStroke(Color.BLACK);
+        connectionLine.setStrokeWidth(3);
+        drawingGroup.getChildren().add(connectionLine);
+    }
+
+    private void showView(boolean canvas) {
+        Image background = currentBackground();
+        clearSelected();
+        drawingGroup.getChildren().clear();
+        placeCircles.clear();
+        if (background != null) {
+            drawingGroup.getChildren().add(new ImageView(background));
+        }
+        mapCanvas = canvas ? new MapCanvas(place -> handlePlaceSelection(place, null)) : null;
+        canvasItem.setSelected(canvas);
+        if (mapCanvas != null) {
+            mapCanvas.setBackground(background);
+            mapCanvas.addPlaces(graph.nodeView());
+            mapCanvas.addConnections(connections);
+            mapCanvas.fit();
+        } else {
+            for (T place : graph.nodeView()) {
+                showPlace(place);
+            }
+            for (Edge<T> edge : connections) {
+                showConnection(edge.getFrom(), edge.getDestination());
+            }
+        }
+        ((BorderPane) scene.getRoot()).setCenter(currentView());
+    }
+
+    private Node currentView() {
+        return mapCanvas != null ? mapCanvas : drawingGroup;
+    }
+
+    private Image currentBackground() {
+        if (mapCanvas != null) {
+            return mapCanvas.getBackgroundImage();
+        }
+        if (!drawingGroup.getChildren().isEmpty() && drawingGroup.getChildren().get(0) instanceof ImageView) {
+            return ((ImageView) drawingGroup.getChildren().get(0)).getImage();
+        }
+        return null;
+    }
+
+    private void changeConnectionWeight(T place1, T place2, int weight) {
+        if (place1 == null || place2 == null || graph.getEdgeBetween(place1, place2) == null) return;
+        graph.setConnectionWeight(place1, place2, weight);
+        for (Edge<T> edge : connections) {
+            if (joins(edge.getFrom(), edge.getDestination(), place1, place2)) edge.setWeight(weight);
+        }
+    }
+
+    private void removeConnection(T place1, T place2) {
+        if (place1 == null || place2 == null || graph.getEdgeBetween(place1, place2) == null) return;
+        graph.disconnect(place1, place2);
+        connections.removeIf(edge -> joins(edge.getFrom(), edge.getDestination(), place1, place2));
+        if (mapCanvas != null) mapCanvas.removeConnection(place1, place2);
+        drawingGroup.getChildren().removeIf(node -> node instanceof Line
+                && joins(new Point2D(((Line) node).getStartX(), ((Line) node).getStartY()),
+                         new Point2D(((Line) node).getEndX(), ((Line) node).getEndY()),
+                         new Point2D(place1.getX(), place1.getY()), new Point2D(place2.getX(), place2.getY())));
+    }
+
+    private void removePlace(String placeName) {
+        T place = nameToNodeMap.get(placeName);
+        if (place == null) return;
+        for (Edge<T> edge : new ArrayList<>(graph.getEdgesFrom(place))) {
+            removeConnection(place, edge.getDestination());
+        }
+        graph.remove(place);
+        nameToNodeMap.remove(placeName);
+        selectedPlaces.remove(place);
+        placeCircles.remove(place);
+        if (mapCanvas != null) mapCanvas.removePlace(place);
+        drawingGroup.getChildren().removeIf(node -> placeName.equals(node.getId()) || ("text_" + placeName).equals(node.getId()));
+    }
+
+    private static <P> boolean joins(P from, P to, P place1, P place2) {
+        return from.equals(place1) && to.equals(place2) || from.equals(place2) && to.equals(place1);
+    }
+
+    private ImageView setBackground(String file) {
+        ImageView backgroundImageView = createBackgroundImageView(file);
+        if (backgroundImageView != null) {
+            if (!drawingGroup.getChildren().isEmpty() && drawingGroup.getChildren().get(0) instanceof ImageView) {
+                drawingGroup.getChildren().set(0, backgroundImageView);
+            } else {
+                drawingGroup.getChildren().add(0, backgroundImageView);
+            }
+            if (mapCanvas != null) mapCanvas.setBackground(backgroundImageView.getImage());
+        }
+        return backgroundImageView;
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        journal = null;
+    }
+
     private void configureScene() {
-        ((BorderPane) scene.getRoot()).setCenter(drawingGroup);
+        ((BorderPane) scene.getRoot()).setCenter(currentView());
         scene.getWindow().sizeToScene();
         findPathButton.setDisable(false);
         showConnectionButton.setDisable(false);
@@ -382,48 +570,66 @@ public class PathFinder extends Application {
     }
 
     private void saveToFile(String filename) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            Object center = ((BorderPane) scene.getRoot()).getCenter();
-
-            if (center instanceof ImageView) {
-                ImageView backgroundImageView = (ImageView) center;
-                if (backgroundImageView.getImage() != null) {
-                    writer.write(backgroundImageView.getImage().getUrl());
-                    writer.newLine();
-                }
-            } else if (center instanceof Group && !((Group) center).getChildren().isEmpty() && ((Group) center).getChildren().get(0) instanceof ImageView) {
-                ImageView backgroundImageView = (ImageView) ((Group) center).getChildren().get(0);
-                if (backgroundImageView.getImage() != null) {
-                    writer.write(backgroundImageView.getImage().getUrl());
-                    writer.newLine();
-                }
-            }
-    
-            StringBuilder node = new StringBuilder();
-            for (T place : graph.getNodes()) {
-                node.append(place.getName()).append(";")
-                    .append(place.getX()).append(";")
-                    .append(place.getY()).append(";");
+        try {
+            // Only a new file, or a journal that has outgrown its base, costs a full rewrite.
+            Path base = Paths.get(filename);
+            if (journal == null || !journal.getBase().toAbsolutePath().equals(base.toAbsolutePath())) {
+                closeJournal();
+                journal = GraphJournal.create(base);
+                journal.compact(this::writeGraph);
+            } else if (journal.needsCompaction()) {
+                journal.compact(this::writeGraph);
+            } else {
+                journal.commit();
             }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        unsavedChanges = false;
+    }
 
-            if (node.length() > 0) {
-                node.setLength(node.length() - 1);
+    private void writeGraph(Writer out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(out);
+        Object center = ((BorderPane) scene.getRoot()).getCenter();
+
+        if (center instanceof ImageView) {
+            ImageView backgroundImageView = (ImageView) center;
+            if (backgroundImageView.getImage() != null) {
+                writer.write(backgroundImageView.getImage().getUrl());
+                writer.newLine();
             }
-            writer.write(node.toString());
-            writer.newLine();
-    
-            for (Edge<T> edge : connections) {
-                writer.write(edge.getFrom().getName() + ";"
-                    + edge.getDestination().getName() + ";"
-                    + edge.getName() + ";"
-                    + edge.getWeight());
+        } else if (center instanceof Group && !((Group) center).getChildren().isEmpty() && ((Group) center).getChildren().get(0) instanceof ImageView) {
+            ImageView backgroundImageView = (ImageView) ((Group) center).getChildren().get(0);
+            if (backgroundImageView.getImage() != null) {
+                writer.write(backgroundImageView.getImage().getUrl());
                 writer.newLine();
             }
-            
-        } catch (IOException ex) {
-            ex.printStackTrace();
+        } else if (center instanceof MapCanvas && ((MapCanvas) center).getBackgroundImage() != null) {
+            writer.write(((MapCanvas) center).getBackgroundImage().getUrl());
+            writer.newLine();
         }
-        unsavedChanges = false;
+
+        StringBuilder node = new StringBuilder();
+        for (T place : graph.nodeView()) {
+            node.append(place.getName()).append(";")
+                .append(place.getX()).append(";")
+                .append(place.getY()).append(";");
+        }
+
+        if (node.length() > 0) {
+            node.setLength(node.length() - 1);
+        }
+        writer.write(node.toString());
+        writer.newLine();
+
+        for (Edge<T> edge : connections) {
+            writer.write(edge.getFrom().getName() + ";"
+                + edge.getDestination().getName() + ";"
+                + edge.getName() + ";"
+                + edge.getWeight());
+            writer.newLine();
+        }
+        writer.flush();
     }
     
     private void saveImage() {
@@ -470,7 +676,7 @@ public class PathFinder extends Application {
     }
 
     private void createNewPlace(double x, double y) {
-        Point2D point = drawingGroup.sceneToLocal(x, y);
+        Point2D point = mapCanvas != null ? mapCanvas.sceneToWorld(x, y) : drawingGroup.sceneToLocal(x, y);
         x = point.getX();
         y = point.getY();
 
@@ -483,22 +689,14 @@ public class PathFinder extends Application {
         if (result.isPresent()) {
             String placeName = result.get();
 
-            if (!nameToNodeMap.containsKey(placeName)) {
+            if (placeName.contains(";")) {
+                showAlert("A place name cannot contain ;");
+            } else if (!nameToNodeMap.containsKey(placeName)) {
                 T newPlace = new T(placeName, x, y);
                 graph.add(newPlace);
                 nameToNodeMap.put(placeName, newPlace);
-
-                Circle placeCircle = new Circle(x, y, 10, Color.BLUE);
-                Text placeText = new Text(x + 10, y, placeName);
-                
-                placeCircle.setId(placeName);
-                placeText.setId("text_" + placeName);
-
-                drawingGroup.getChildren().addAll(placeCircle, placeText);
-
-                placeCircle.setOnMouseClicked(event -> {
-                    handlePlaceSelection(newPlace, placeCircle);
-                });
+                if (journal != null) journal.place(placeName, x, y);
+                showPlace(newPlace);
 
                 unsavedChanges = true;
             } else {
@@ -511,14 +709,15 @@ public class PathFinder extends Application {
 
     private void handlePlaceSelection(T place, Circle circle) {
         if (selectedPlaces.contains(place)) {
-            circle.setFill(Color.BLUE);
+            if (circle != null) circle.setFill(Color.BLUE);
             selectedPlaces.remove(place);
         } else {
             if (selectedPlaces.size() < 2) {
-                circle.setFill(Color.RED);
+                if (circle != null) circle.setFill(Color.RED);
                 selectedPlaces.add(place);
             }
         }
+        if (mapCanvas != null) mapCanvas.setSelected(selectedPlaces);
     }
     
     private Pair<String, Integer> getConnectionDetails(T fromPlace, T toPlace) {
@@ -571,14 +770,11 @@ public class PathFinder extends Application {
     }
     
     private void drawConnection(T fromPlace, T toPlace, Pair<String, Integer> details) {
-        Line connectionLine = new Line(fromPlace.getX(), fromPlace.getY(), toPlace.getX(), toPlace.getY());
-        connectionLine.setStroke(Color.BLACK);
-        connectionLine.setStrokeWidth(3);
-    
-        drawingGroup.getChildren().add(connectionLine);
+        showConnection(fromPlace, toPlace);
     
         connections.add(new Edge<>(fromPlace, toPlace, details.getKey(), details.getValue()));
         graph.connect(fromPlace, toPlace, details.getKey(), details.getValue());
+        if (journal != null) journal.connection(fromPlace.getName(), toPlace.getName(), details.getKey(), details.getValue());
     }    
     
     private void showAlert(String message) {
@@ -642,6 +838,7 @@ public class PathFinder extends Application {
         } else {
             connection.get().setWeight(newWeight);
             graph.setConnectionWeight(connection.get().getFrom(), connection.get().getDestination(), newWeight);
+            if (journal != null) journal.weight(connection.get().getFrom().getName(), connection.get().getDestination().getName(), newWeight);
             connections.stream()
                 .filter(edge ->
                     edge.getDestination().equals(connection.get().getFrom()) && edge.getFrom().equals(connection.get().getDestination())
@@ -0,0 +1,300 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+public class RouteCli {
+    public enum Format {
+        TEXT, CSV, JSON
+    }
+
+    private final ListGraph<T> graph = new ListGraph<>();
+    private final Map<String, T> nameToNodeMap = new HashMap<>();
+
+    public GraphFileParser.Report load(Path file, boolean replayJournal) throws IOException {
+        GraphBulkLoader.Result<T> loaded = GraphBulkLoader.load(file, new GraphFileParser.PlaceBuilder<T>() {
+            @Override
+            public void background(String url) {
+            }
+
+            @Override
+            public T place(String name, double x, double y) {
+                return addPlace(name, x, y);
+            }
+        }, ForkJoinPool.commonPool());
+        loaded.connectTo(graph);
+        if (replayJournal && Files.exists(GraphJournal.journalPath(file))) {
+            GraphJournal.open(file, new GraphJournal.Replay() {
+                @Override
+                public void background(String url) {
+                }
+
+                @Override
+                public void place(String name, double x, double y) {
+                    if (!nameToNodeMap.containsKey(name)) addPlace(name, x, y);
+                }
+
+                @Override
+                public void connection(String from, String to, String name, int weight) {
+                    T place1 = nameToNodeMap.get(from);
+                    T place2 = nameToNodeMap.get(to);
+                    if (place1 == null || place2 == null || place1.equals(place2)) return;
+                    if (graph.getEdgeBetween(place1, place2) == null) {
+                        graph.connect(place1, place2, name, weight);
+                    } else {
+                        graph.setConnectionWeight(place1, place2, weight);
+                    }
+                }
+
+                @Override
+                public void disconnection(String from, String to) {
+                    T place1 = nameToNodeMap.get(from);
+                    T place2 = nameToNodeMap.get(to);
+                    if (place1 != null && place2 != null && graph.getEdgeBetween(place1, place2) != null) {
+                        graph.disconnect(place1, place2);
+                    }
+                }
+
+                @Override
+                public void weight(String from, String to, int weight) {
+                    T place1 = nameToNodeMap.get(from);
+                    T place2 = nameToNodeMap.get(to);
+                    if (place1 != null && place2 != null && graph.getEdgeBetween(place1, place2) != null) {
+                        graph.setConnectionWeight(place1, place2, weight);
+                    }
+                }
+
+                @Override
+                public void removal(String name) {
+                    T place = nameToNodeMap.remove(name);
+                    if (place != null) graph.remove(place);
+                }
+            }).close();
+        }
+        return loaded.getReport();
+    }
+
+    private T addPlace(String name, double x, double y) {
+        T place = new T(name, x, y);
+        graph.add(place);
+        nameToNodeMap.put(name, place);
+        return place;
+    }
+
+    public ListGraph<T> getGraph() {
+        return graph;
+    }
+
+    public Map<String, T> getPlaces() {
+        return Collections.unmodifiableMap(nameToNodeMap);
+    }
+
+    public BatchRouter<T> router(int parallelism) {
+        return new BatchRouter<>(graph, nameToNodeMap, parallelism);
+    }
+
+    public int route(BatchRouter<T> router, BufferedReader queries, PrintWriter out, Format format, boolean ordered,
+                     boolean flushEach) {
+        int[] counts = new int[BatchRouter.Status.values().length];
+        Iterator<BatchRouter.Query> input = new Iterator<>() {
+            private String line = readQueryLine(queries);
+
+            @Override
+            public boolean hasNext() {
+                return line != null;
+            }
+
+            @Override
+            public BatchRouter.Query next() {
+                if (line == null) {
+                    throw new NoSuchElementException();
+                }
+                int separator = line.indexOf(';');
+                BatchRouter.Query query = separator < 0
+                        ? new BatchRouter.Query(line.trim(), "")
+                        : new BatchRouter.Query(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+                line = readQueryLine(queries);
+                return query;
+            }
+        };
+        if (format == Format.CSV) {
+            out.println("from;to;status;distance;path");
+        }
+        router.route(input, ordered, result -> {
+            counts[result.getStatus().ordinal()]++;
+            write(out, format, result);
+            if (flushEach) {
+                out.flush();
+            }
+        });
+        out.flush();
+        int total = 0;
+        for (BatchRouter.Status status : BatchRouter.Status.values()) {
+            total += counts[status.ordinal()];
+        }
+        StringBuilder summary = new StringBuilder();
+        for (BatchRouter.Status status : BatchRouter.Status.values()) {
+            summary.append(' ').append(status.name().toLowerCase()).append('=').append(counts[status.ordinal()]);
+        }
+        System.err.println("queries=" + total + summary);
+        return total;
+    }
+
+    private static String readQueryLine(BufferedReader reader) {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    return line;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(PrintWriter out, Format format, BatchRouter.Result<T> result) {
+        BatchRouter.Query query = result.getQuery();
+        List<String> places = places(query, result);
+        switch (format) {
+            case TEXT:
+                out.print(query.getFrom() + " -> " + query.getTo() + ": ");
+                if (result.getStatus() == BatchRouter.Status.FOUND) {
+                    out.println(result.getDistance() + " " + places);
+                } else if (result.getStatus() == BatchRouter.Status.FAILED) {
+                    out.println("failed (" + result.getError() + ")");
+                } else {
+                    out.println(result.getStatus() == BatchRouter.Status.NO_PATH ? "no path" : "unknown place");
+                }
+                break;
+            case CSV:
+                out.println(query.getFrom() + ";" + query.getTo() + ";" + result.getStatus() + ";"
+                        + (result.getStatus() == BatchRouter.Status.FOUND ? result.getDistance() : "") + ";"
+                        + String.join(">", places));
+                break;
+            case JSON:
+                StringBuilder json = new StringBuilder("{\"from\":");
+                quote(json, query.getFrom()).append(",\"to\":");
+                quote(json, query.getTo()).append(",\"status\":\"").append(result.getStatus()).append('"');
+                if (result.getStatus() == BatchRouter.Status.FOUND) {
+                    json.append(",\"distance\":").append(result.getDistance()).append(",\"path\":[");
+                    for (int i = 0; i < places.size(); i++) {
+                        quote(i == 0 ? json : json.append(','), places.get(i));
+                    }
+                    json.append(']');
+                }
+                if (result.getError() != null) {
+                    quote(json.append(",\"error\":"), String.valueOf(result.getError()));
+                }
+                out.println(json.append('}'));
+                break;
+        }
+    }
+
+    private static List<String> places(BatchRouter.Query query, BatchRouter.Result<T> result) {
+        if (result.getStatus() != BatchRouter.Status.FOUND) {
+            return Collections.emptyList();
+        }
+        if (result.getPath() == null) {
+            return Collections.singletonList(query.getFrom());
+        }
+        List<String> places = new ArrayList<>(result.getPath().size() + 1);
+        places.add(result.getPath().get(0).getFrom().getName());
+        for (Edge<T> edge : result.getPath()) {
+            places.add(edge.getDestination().getName());
+        }
+        return places;
+    }
+
+    static StringBuilder quote(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
+    private static void usage() {
+        System.err.println("usage: RouteCli [--graph file] [--queries file] [--parallelism n] [--format text|csv|json]");
+        System.err.println("                [--mode " + Arrays.toString(RouteMode.values()) + "] [--unordered] [--journal]");
+        System.err.println("Queries are read one per line as from;to, from stdin unless --queries is given.");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path graphFile = Paths.get("europa.graph");
+        Path queryFile = null;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        Format format = Format.TEXT;
+        RouteMode mode = RouteMode.A_STAR;
+        boolean ordered = true;
+        boolean replayJournal = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--graph":
+                        graphFile = Paths.get(args[++i]);
+                        break;
+                    case "--queries":
+                        queryFile = Paths.get(args[++i]);
+                        break;
+                    case "--parallelism":
+                        parallelism = Integer.parseInt(args[++i]);
+                        break;
+                    case "--format":
+                        format = Format.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--mode":
+                        mode = RouteMode.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--unordered":
+                        ordered = false;
+                        break;
+                    case "--journal":
+                        replayJournal = true;
+                        break;
+                    default:
+                        usage();
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            usage();
+        }
+        if (parallelism < 1) {
+            usage();
+        }
+
+        RouteCli cli = new RouteCli();
+        cli.graph.setCoordinates(T::getX, T::getY);
+        cli.graph.setRouteMode(mode);
+        HeapPeak.reset();
+        GraphFileParser.Report report = cli.load(graphFile, replayJournal);
+        System.err.println(report.withPeakHeapBytes(HeapPeak.bytes()));
+
+        // The router works on a prepared snapshot, so search indexes are built once before the first query.
+        long prepareStart = System.nanoTime();
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        try (BatchRouter<T> router = cli.router(parallelism);
+             BufferedReader queries = queryFile == null
+                     ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                     : Files.newBufferedReader(queryFile, StandardCharsets.UTF_8)) {
+            System.err.printf("prepared %s in %.1fms%n", mode, (System.nanoTime() - prepareStart) / 1e6);
+            long start = System.nanoTime();
+            int total = cli.route(router, queries, out, format, ordered, System.console() != null);
+            long elapsed = System.nanoTime() - start;
+            System.err.printf("routed %d queries in %.1fms (%.0f queries/s, parallelism=%d)%n",
+                    total, elapsed / 1e6, total * 1e9 / Math.max(elapsed, 1), parallelism);
+        }
+    }
+}
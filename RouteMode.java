@@ -0,0 +1,7 @@
+public enum RouteMode {
+    DIJKSTRA,
+    A_STAR,
+    BIDIRECTIONAL,
+    CONTRACTION_HIERARCHY,
+    LANDMARKS
+}
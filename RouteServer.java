@@ -0,0 +1,414 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class RouteServer<N> implements AutoCloseable {
+    private enum Kind {
+        PATH, DISTANCE, REACHABLE
+    }
+
+    private final ListGraph<N> graph;
+    private final Map<String, N> places;
+    private final Function<N, String> names;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ForkJoinPool searchers;
+    private final Semaphore idleSearchers;
+    private final BlockingQueue<Pending<N>> queue;
+    private final Thread batcher;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Map<Kind, LatencyHistogram> latencies = new EnumMap<>(Kind.class);
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private volatile boolean running = true;
+
+    public RouteServer(ListGraph<N> graph, Map<String, N> places, Function<N, String> names, InetSocketAddress address,
+                       int parallelism, long windowMicros, int maxBatch) throws IOException {
+        if (parallelism < 1 || windowMicros < 0 || maxBatch < 1) {
+            throw new IllegalArgumentException();
+        }
+        // Requests only ever read a prepared snapshot, so searches run concurrently without locking.
+        this.graph = graph.snapshot();
+        this.graph.prepareQueries(this.graph.getRouteMode());
+        this.places = Map.copyOf(places);
+        this.names = Objects.requireNonNull(names);
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        for (Kind kind : Kind.values()) {
+            latencies.put(kind, new LatencyHistogram());
+        }
+        queue = new ArrayBlockingQueue<>(maxBatch * 64);
+        searchers = new ForkJoinPool(parallelism);
+        idleSearchers = new Semaphore(parallelism);
+        handlers = Executors.newFixedThreadPool(Math.max(parallelism * 8, 16));
+        server = HttpServer.create(address, 1024);
+        server.setExecutor(handlers);
+        server.createContext("/path", exchange -> handle(exchange, Kind.PATH));
+        server.createContext("/distance", exchange -> handle(exchange, Kind.DISTANCE));
+        server.createContext("/reachable", exchange -> handle(exchange, Kind.REACHABLE));
+        server.createContext("/stats", this::stats);
+        batcher = new Thread(this::dispatch, "route-batcher");
+        batcher.setDaemon(true);
+    }
+
+    public RouteServer<N> start() {
+        batcher.start();
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, Kind kind) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"GET only\"}");
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+            String fromName = parameters.get("from");
+            String toName = parameters.get("to");
+            N from = fromName != null ? places.get(fromName) : nearest(parameters, "from");
+            N to = toName != null ? places.get(toName) : nearest(parameters, "to");
+            if (fromName == null && from == null || toName == null && to == null) {
+                respond(exchange, 400, "{\"error\":\"from and to, or their coordinates, are required\"}");
+                return;
+            }
+            fromName = fromName != null ? fromName : names.apply(from);
+            toName = toName != null ? toName : names.apply(to);
+            if (from == null || to == null) {
+                respond(exchange, 404, answer(kind, fromName, toName, BatchRouter.Status.UNKNOWN_PLACE, null,
+                        DistanceMatrix.UNREACHABLE));
+                return;
+            }
+            Pending<N> pending = new Pending<>(kind, from, to);
+            if (kind == Kind.REACHABLE || from.equals(to)) {
+                // Reachability is a connectivity lookup and a trivial route has nothing to share, so neither queues.
+                answerDirectly(pending);
+            } else if (!queue.offer(pending)) {
+                respond(exchange, 503, "{\"error\":\"overloaded\"}");
+                return;
+            }
+            pending.result.get();
+            respond(exchange, 200, answer(kind, fromName, toName, pending.status, pending.path, pending.distance));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "{\"error\":\"interrupted\"}");
+        } catch (NumberFormatException e) {
+            respond(exchange, 400, "{\"error\":\"coordinates must be numbers\"}");
+        } catch (ExecutionException | RuntimeException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            StringBuilder json = new StringBuilder("{\"error\":");
+            respond(exchange, 500, RouteCli.quote(json, String.valueOf(cause)).append('}').toString());
+        } finally {
+            latencies.get(kind).record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    private N nearest(Map<String, String> parameters, String end) {
+        String x = parameters.get(end + "X");
+        String y = parameters.get(end + "Y");
+        if (x == null || y == null) {
+            return null;
+        }
+        // A position between places is snapped to the closest one, the same way a click on the map is.
+        return graph.getNearest(Double.parseDouble(x), Double.parseDouble(y));
+    }
+
+    private void answerDirectly(Pending<N> pending) {
+        if (pending.kind == Kind.REACHABLE) {
+            pending.complete(graph.pathExists(pending.from, pending.to) ? BatchRouter.Status.FOUND
+                    : BatchRouter.Status.NO_PATH, null, DistanceMatrix.UNREACHABLE);
+        } else {
+            pending.complete(BatchRouter.Status.FOUND, Collections.emptyList(), 0);
+        }
+    }
+
+    private void dispatch() {
+        List<Pending<N>> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                // Nothing is taken off the queue until a searcher is free, so a burst that arrives while every
+                // searcher is busy waits in the queue and is picked up as one batch.
+                idleSearchers.acquire();
+                Pending<N> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    idleSearchers.release();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    Pending<N> next = queue.poll();
+                    long remaining = deadline - System.nanoTime();
+                    if (next == null && remaining > 0) {
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            batches.increment();
+            batchedRequests.add(batch.size());
+            Map<N, List<Pending<N>>> byOrigin = new LinkedHashMap<>();
+            for (Pending<N> pending : batch) {
+                byOrigin.computeIfAbsent(pending.from, origin -> new ArrayList<>()).add(pending);
+            }
+            boolean acquired = true;
+            for (Map.Entry<N, List<Pending<N>>> group : byOrigin.entrySet()) {
+                if (!acquired) {
+                    idleSearchers.acquireUninterruptibly();
+                }
+                acquired = false;
+                searches.increment();
+                searchers.execute(() -> search(group.getKey(), group.getValue()));
+            }
+            batch.clear();
+        }
+        for (Pending<N> pending; (pending = queue.poll()) != null; ) {
+            batch.add(pending);
+        }
+        for (Pending<N> pending : batch) {
+            pending.result.completeExceptionally(new IllegalStateException("Server stopped"));
+        }
+    }
+
+    private void search(N from, List<Pending<N>> group) {
+        long start = System.nanoTime();
+        try {
+            if (group.size() == 1) {
+                Pending<N> pending = group.get(0);
+                complete(pending, graph.getPath(from, pending.to));
+                return;
+            }
+            // Every request sharing an origin is answered by one search that stops at the last wanted target.
+            List<N> targets = new ArrayList<>(group.size());
+            boolean needsPaths = false;
+            for (Pending<N> pending : group) {
+                targets.add(pending.to);
+                needsPaths |= pending.kind == Kind.PATH;
+            }
+            if (needsPaths) {
+                List<List<Edge<N>>> paths = graph.getPaths(from, targets);
+                for (int i = 0; i < group.size(); i++) {
+                    complete(group.get(i), paths.get(i));
+                }
+            } else {
+                long[] distances = graph.getDistances(from, targets);
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).complete(distances[i] == DistanceMatrix.UNREACHABLE ? BatchRouter.Status.NO_PATH
+                            : BatchRouter.Status.FOUND, null, distances[i]);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            for (Pending<N> pending : group) {
+                pending.result.completeExceptionally(e);
+            }
+        } finally {
+            batchLatency.record((System.nanoTime() - start) / 1000);
+            idleSearchers.release();
+        }
+    }
+
+    private static <N> void complete(Pending<N> pending, List<Edge<N>> path) {
+        if (path == null) {
+            pending.complete(BatchRouter.Status.NO_PATH, null, DistanceMatrix.UNREACHABLE);
+            return;
+        }
+        long distance = 0;
+        for (Edge<N> edge : path) {
+            distance += edge.getWeight();
+        }
+        pending.complete(BatchRouter.Status.FOUND, path, distance);
+    }
+
+    private String answer(Kind kind, String fromName, String toName, BatchRouter.Status status, List<Edge<N>> path,
+                          long distance) {
+        StringBuilder json = new StringBuilder("{\"from\":");
+        RouteCli.quote(json, fromName).append(",\"to\":");
+        RouteCli.quote(json, toName).append(",\"status\":\"").append(status).append('"');
+        if (kind == Kind.REACHABLE) {
+            json.append(",\"reachable\":").append(status == BatchRouter.Status.FOUND);
+        } else if (status == BatchRouter.Status.FOUND) {
+            json.append(",\"distance\":").append(distance);
+            if (kind == Kind.PATH) {
+                json.append(",\"path\":[");
+                RouteCli.quote(json, fromName);
+                for (Edge<N> edge : path) {
+                    RouteCli.quote(json.append(','), names.apply(edge.getDestination()));
+                }
+                json.append(']');
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        for (Kind kind : Kind.values()) {
+            appendHistogram(json, kind.name().toLowerCase(), latencies.get(kind)).append(',');
+        }
+        appendHistogram(json, "search", batchLatency);
+        long batchCount = batches.sum();
+        json.append(",\"batches\":").append(batchCount)
+                .append(",\"batchedRequests\":").append(batchedRequests.sum())
+                .append(",\"searches\":").append(searches.sum())
+                .append(",\"meanBatchSize\":").append(String.format(Locale.ROOT, "%.2f",
+                        batchCount == 0 ? 0.0 : (double) batchedRequests.sum() / batchCount))
+                .append('}');
+        respond(exchange, 200, json.toString());
+    }
+
+    private static StringBuilder appendHistogram(StringBuilder json, String name, LatencyHistogram histogram) {
+        return json.append('"').append(name).append("\":{\"count\":").append(histogram.getCount())
+                .append(",\"meanMicros\":").append(String.format(Locale.ROOT, "%.1f", histogram.getMean()))
+                .append(",\"p50Micros\":").append(histogram.getPercentile(50))
+                .append(",\"p90Micros\":").append(histogram.getPercentile(90))
+                .append(",\"p99Micros\":").append(histogram.getPercentile(99))
+                .append(",\"p999Micros\":").append(histogram.getPercentile(99.9))
+                .append(",\"maxMicros\":").append(histogram.getMax()).append('}');
+    }
+
+    public LatencyHistogram getLatency(String endpoint) {
+        return latencies.get(Kind.valueOf(endpoint.toUpperCase()));
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        server.stop(0);
+        batcher.interrupt();
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        handlers.shutdown();
+        searchers.shutdown();
+    }
+
+    private static final class Pending<N> {
+        private final Kind kind;
+        private final N from;
+        private final N to;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private BatchRouter.Status status;
+        private List<Edge<N>> path;
+        private long distance;
+
+        Pending(Kind kind, N from, N to) {
+            this.kind = kind;
+            this.from = from;
+            this.to = to;
+        }
+
+        void complete(BatchRouter.Status status, List<Edge<N>> path, long distance) {
+            this.status = status;
+            this.path = path;
+            this.distance = distance;
+            result.complete(null);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path graphFile = Paths.get("europa.graph");
+        String host = "127.0.0.1";
+        int port = 8080;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        long windowMicros = 0;
+        int maxBatch = 256;
+        RouteMode mode = RouteMode.A_STAR;
+        boolean replayJournal = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--graph":
+                        graphFile = Paths.get(args[++i]);
+                        break;
+                    case "--host":
+                        host = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--parallelism":
+                        parallelism = Integer.parseInt(args[++i]);
+                        break;
+                    case "--window-micros":
+                        windowMicros = Long.parseLong(args[++i]);
+                        break;
+                    case "--max-batch":
+                        maxBatch = Integer.parseInt(args[++i]);
+                        break;
+                    case "--mode":
+                        mode = RouteMode.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--journal":
+                        replayJournal = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("usage: RouteServer [--graph file] [--host address] [--port n] [--parallelism n]");
+            System.err.println("                   [--window-micros n] [--max-batch n] [--mode mode] [--journal]");
+            System.exit(2);
+        }
+
+        RouteCli loader = new RouteCli();
+        loader.getGraph().setCoordinates(T::getX, T::getY);
+        loader.getGraph().setRouteMode(mode);
+        System.err.println(loader.load(graphFile, replayJournal));
+        RouteServer<T> server = new RouteServer<>(loader.getGraph(), loader.getPlaces(), T::getName,
+                new InetSocketAddress(host, port), parallelism, windowMicros, maxBatch).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.err.println("listening on http://" + host + ":" + server.getPort()
+                + " (/path, /distance, /reachable, /stats)");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RouteServerBenchmark {
+    private final ListGraph<String> graph = new ListGraph<>();
+    private final int side;
+
+    public RouteServerBenchmark(int side, long seed) {
+        this.side = side;
+        Random random = new Random(seed);
+        graph.setCoordinates(node -> index(node) % side, node -> index(node) / side);
+        for (int node = 0; node < side * side; node++) {
+            graph.add("P" + node);
+        }
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = row * side + column;
+                if (column + 1 < side) {
+                    graph.connect("P" + node, "P" + (node + 1), "h", 1 + random.nextInt(100));
+                }
+                if (row + 1 < side) {
+                    graph.connect("P" + node, "P" + (node + side), "v", 1 + random.nextInt(100));
+                }
+            }
+        }
+    }
+
+    private static int index(String node) {
+        return Integer.parseInt(node.substring(1));
+    }
+
+    public String run(int clients, int origins, long durationMillis, long windowMicros)
+            throws IOException, InterruptedException {
+        Map<String, String> places = new HashMap<>();
+        for (String node : graph.getNodes()) {
+            places.put(node, node);
+        }
+        try (RouteServer<String> server = new RouteServer<>(graph, places, node -> node,
+                new InetSocketAddress("127.0.0.1", 0), Runtime.getRuntime().availableProcessors(), windowMicros,
+                256).start()) {
+            String base = "http://127.0.0.1:" + server.getPort();
+            ExecutorService executor = Executors.newFixedThreadPool(clients);
+            AtomicBoolean running = new AtomicBoolean(true);
+            LongAdder requests = new LongAdder();
+            LongAdder failures = new LongAdder();
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                long clientSeed = 31L * (i + 1);
+                tasks.add(executor.submit(() -> {
+                    // Requests come from a few hubs, the way depots ask for routes, so origins repeat in bursts.
+                    Random random = new Random(clientSeed);
+                    while (running.get()) {
+                        String from = "P" + (random.nextInt(origins) * (side * side / origins));
+                        String to = "P" + random.nextInt(side * side);
+                        String endpoint = random.nextBoolean() ? "/path" : "/distance";
+                        String body = get(base + endpoint + "?from=" + URLEncoder.encode(from, StandardCharsets.UTF_8)
+                                + "&to=" + URLEncoder.encode(to, StandardCharsets.UTF_8));
+                        if (body == null || !body.contains("\"FOUND\"")) {
+                            failures.increment();
+                        }
+                        requests.increment();
+                    }
+                    return null;
+                }));
+            }
+            long began = System.nanoTime();
+            Thread.sleep(durationMillis);
+            running.set(false);
+            long elapsed = System.nanoTime() - began;
+            executor.shutdown();
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            if (failures.sum() > 0) {
+                throw new IllegalStateException(failures.sum() + " failed requests");
+            }
+            return String.format("clients=%d window=%dus requests/s=%.0f%n  path %s%n  distance %s%n  %s", clients,
+                    windowMicros, requests.sum() * 1e9 / elapsed, server.getLatency("path"),
+                    server.getLatency("distance"), get(base + "/stats"));
+        }
+    }
+
+    private static String get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (connection.getResponseCode() != 200) {
+            connection.getErrorStream().close();
+            return null;
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long duration = args.length > 1 ? Long.parseLong(args[1]) : 3000;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int origins = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+        RouteServerBenchmark benchmark = new RouteServerBenchmark(side, 42);
+        benchmark.run(clients, origins, duration / 3, 0);
+        System.out.println(benchmark.run(clients, origins, duration, 0));
+        System.out.println(benchmark.run(clients, origins, duration, 200));
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+public class SearchContext {
+    public static final int FORWARD = 0;
+    public static final int BACKWARD = 1;
+
+    private static final ThreadLocal<SearchContext[]> CONTEXTS =
+            ThreadLocal.withInitial(() -> new SearchContext[2]);
+
+    private long[] distances = new long[0];
+    private int[] parents = new int[0];
+    private Object[] parentEdges = new Object[0];
+    private int[] stamps = new int[0];
+    private int[] queue = new int[0];
+    private int epoch;
+    private int settledCount;
+    private final IndexedHeap heap = new IndexedHeap(16);
+
+    public static SearchContext acquire(int slot, int capacity) {
+        SearchContext[] contexts = CONTEXTS.get();
+        SearchContext context = contexts[slot];
+        if (context == null) {
+            context = new SearchContext();
+            contexts[slot] = context;
+        }
+        context.reset(capacity);
+        return context;
+    }
+
+    public void reset(int capacity) {
+        if (stamps.length < capacity) {
+            int length = Math.max(capacity, stamps.length + (stamps.length >> 1));
+            distances = Arrays.copyOf(distances, length);
+            parents = Arrays.copyOf(parents, length);
+            parentEdges = Arrays.copyOf(parentEdges, length);
+            stamps = Arrays.copyOf(stamps, length);
+            queue = new int[length];
+        }
+        heap.ensureCapacity(capacity);
+        heap.clear();
+        settledCount = 0;
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            Arrays.fill(parentEdges, null);
+            epoch = 1;
+        }
+    }
+
+    public IndexedHeap heap() {
+        return heap;
+    }
+
+    // Scratch space for breadth-first searches, which only need reached flags and a FIFO of nodes.
+    public int[] queue() {
+        return queue;
+    }
+
+    public boolean mark(int node) {
+        if (stamps[node] == epoch) {
+            return false;
+        }
+        stamps[node] = epoch;
+        return true;
+    }
+
+    public boolean isReached(int node) {
+        return stamps[node] == epoch;
+    }
+
+    public long distance(int node) {
+        return stamps[node] == epoch ? distances[node] : Long.MAX_VALUE;
+    }
+
+    public int parent(int node) {
+        return stamps[node] == epoch ? parents[node] : -1;
+    }
+
+    public Object parentEdge(int node) {
+        return stamps[node] == epoch ? parentEdges[node] : null;
+    }
+
+    public void reach(int node, long distance, int parent, Object parentEdge) {
+        stamps[node] = epoch;
+        distances[node] = distance;
+        parents[node] = parent;
+        parentEdges[node] = parentEdge;
+    }
+
+    public void countSettled() {
+        settledCount++;
+    }
+
+    public int settledCount() {
+        return settledCount;
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.*;
+import java.util.*;
+
+public class SerializationBenchmark {
+    private final ListGraph<String> graph = new ListGraph<>();
+
+    public SerializationBenchmark(int side, long seed) {
+        Random random = new Random(seed);
+        for (int node = 0; node < side * side; node++) {
+            graph.add("Place" + node);
+        }
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = row * side + column;
+                if (column + 1 < side) {
+                    graph.connect("Place" + node, "Place" + (node + 1), "Road" + random.nextInt(50), 1 + random.nextInt(100));
+                }
+                if (row + 1 < side) {
+                    graph.connect("Place" + node, "Place" + (node + side), "Rail" + random.nextInt(50), 1 + random.nextInt(100));
+                }
+            }
+        }
+    }
+
+    public Result run(Object value, int iterations) throws IOException, ClassNotFoundException {
+        byte[] bytes = serialize(value);
+        Object read = null;
+        long began = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            read = deserialize(serialize(value));
+        }
+        long elapsed = System.nanoTime() - began;
+        return new Result(value.getClass().getSimpleName(), bytes.length, elapsed / iterations, read);
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static boolean sameGraph(ListGraph<String> expected, ListGraph<String> actual) {
+        if (!expected.getNodes().equals(actual.getNodes())) {
+            return false;
+        }
+        for (String node : expected.getNodes()) {
+            for (Edge<String> edge : expected.getEdgesFrom(node)) {
+                Edge<String> other = actual.getEdgeBetween(node, edge.getDestination());
+                if (other == null || other.getWeight() != edge.getWeight() || !other.getName().equals(edge.getName())) {
+                    return false;
+                }
+            }
+            if (expected.getEdgesFrom(node).size() != actual.getEdgesFrom(node).size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The fields ListGraph used to write through default serialization, kept here as the baseline.
+    private static final class DefaultForm implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, Map<String, Edge<String>>> nodes = new HashMap<>();
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> nodeAt = new ArrayList<>();
+        private final RouteMode routeMode;
+
+        DefaultForm(ListGraph<String> graph) {
+            for (String node : graph.getNodes()) {
+                Map<String, Edge<String>> edges = new HashMap<>();
+                for (Edge<String> edge : graph.getEdgesFrom(node)) {
+                    edges.put(edge.getDestination(), edge);
+                }
+                nodes.put(node, edges);
+                indices.put(node, nodeAt.size());
+                nodeAt.add(node);
+            }
+            routeMode = graph.getRouteMode();
+        }
+    }
+
+    public static final class Result {
+        private final String form;
+        private final int bytes;
+        private final long roundTripNanos;
+        private final Object read;
+
+        Result(String form, int bytes, long roundTripNanos, Object read) {
+            this.form = form;
+            this.bytes = bytes;
+            this.roundTripNanos = roundTripNanos;
+            this.read = read;
+        }
+
+        public int getBytes() {
+            return bytes;
+        }
+
+        public long getRoundTripNanos() {
+            return roundTripNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s bytes=%d roundTrip=%.1fms", form, bytes, roundTripNanos / 1e6);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        SerializationBenchmark benchmark = new SerializationBenchmark(side, 42);
+        DefaultForm baseline = new DefaultForm(benchmark.graph);
+        benchmark.run(baseline, 2);
+        benchmark.run(benchmark.graph, 2);
+        Result before = benchmark.run(baseline, iterations);
+        Result after = benchmark.run(benchmark.graph, iterations);
+        System.out.println(before);
+        System.out.println(after);
+        System.out.printf("size %.1fx smaller, round trip %.1fx faster%n", (double) before.getBytes() / after.getBytes(),
+                (double) before.getRoundTripNanos() / after.getRoundTripNanos());
+        if (!sameGraph(benchmark.graph, (ListGraph<String>) after.read)) {
+            System.exit(1);
+        }
+    }
+}
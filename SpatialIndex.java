@@ -0,0 +1,399 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+public class SpatialIndex {
+    // A leaf splits once it holds more places than this, unless its square is too small to divide further.
+    private static final int BUCKET = 16;
+
+    public interface ClusterVisitor {
+        void visit(int count, double x, double y);
+    }
+
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private boolean[] present = new boolean[0];
+    private Node root;
+    private int size;
+
+    public void insert(int id, double x, double y) {
+        if (id < 0 || !Double.isFinite(x) || !Double.isFinite(y)) {
+            throw new IllegalArgumentException();
+        }
+        ensureCapacity(id + 1);
+        if (present[id]) {
+            throw new IllegalStateException("Already indexed: " + id);
+        }
+        xs[id] = x;
+        ys[id] = y;
+        present[id] = true;
+        size++;
+        if (root == null) {
+            root = new Node(Math.floor(x), Math.floor(y), 1);
+        }
+        while (!root.contains(x, y)) {
+            grow(x, y);
+        }
+        Node node = root;
+        while (true) {
+            node.add(x, y);
+            if (node.children != null) {
+                node = node.children[node.quadrant(x, y)];
+            } else if (node.idCount < BUCKET || !node.divisible()) {
+                node.append(id);
+                return;
+            } else {
+                split(node);
+                node = node.children[node.quadrant(x, y)];
+            }
+        }
+    }
+
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        double x = xs[id];
+        double y = ys[id];
+        present[id] = false;
+        size--;
+        Node collapse = null;
+        Node node = root;
+        while (true) {
+            node.subtract(x, y);
+            if (node.children == null) {
+                break;
+            }
+            // The highest internal node that now fits in a single bucket absorbs everything below it.
+            if (collapse == null && node.count <= BUCKET) {
+                collapse = node;
+            }
+            node = node.children[node.quadrant(x, y)];
+        }
+        for (int i = 0; i < node.idCount; i++) {
+            if (node.ids[i] == id) {
+                node.ids[i] = node.ids[--node.idCount];
+                break;
+            }
+        }
+        if (size == 0) {
+            root = null;
+        } else if (collapse != null) {
+            int[] ids = new int[Math.max(BUCKET, collapse.count)];
+            collapse.idCount = gather(collapse, ids, 0);
+            collapse.ids = ids;
+            collapse.children = null;
+        }
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < present.length && present[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int id) {
+        return xs[id];
+    }
+
+    public double getY(int id) {
+        return ys[id];
+    }
+
+    public void clear() {
+        Arrays.fill(present, false);
+        root = null;
+        size = 0;
+    }
+
+    public int nearest(double x, double y) {
+        int[] found = nearest(x, y, 1, Double.POSITIVE_INFINITY);
+        return found.length == 0 ? -1 : found[0];
+    }
+
+    public int[] nearest(double x, double y, int k, double maxDistance) {
+        if (k < 0 || maxDistance < 0) {
+            throw new IllegalArgumentException();
+        }
+        int capacity = Math.min(k, size);
+        if (capacity == 0) {
+            return new int[0];
+        }
+        Search search = new Search(x, y, capacity, maxDistance * maxDistance);
+        nearest(root, search);
+        return search.found == capacity ? search.best : Arrays.copyOf(search.best, search.found);
+    }
+
+    private void nearest(Node node, Search search) {
+        if (node.children == null) {
+            for (int i = 0; i < node.idCount; i++) {
+                int id = node.ids[i];
+                double dx = xs[id] - search.x;
+                double dy = ys[id] - search.y;
+                search.offer(id, dx * dx + dy * dy);
+            }
+            return;
+        }
+        // Children are searched closest first, so the bound tightens before the farther squares are reached.
+        double[] distances = new double[4];
+        int[] order = {0, 1, 2, 3};
+        for (int i = 0; i < 4; i++) {
+            distances[i] = node.children[i].distanceSquared(search.x, search.y);
+            for (int j = i; j > 0 && distances[order[j]] < distances[order[j - 1]]; j--) {
+                int swap = order[j];
+                order[j] = order[j - 1];
+                order[j - 1] = swap;
+            }
+        }
+        for (int child : order) {
+            if (distances[child] > search.bound()) {
+                return;
+            }
+            if (node.children[child].count > 0) {
+                nearest(node.children[child], search);
+            }
+        }
+    }
+
+    public void forEachWithin(double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        if (root != null) {
+            forEachWithin(root, minX, minY, maxX, maxY, action);
+        }
+    }
+
+    private void forEachWithin(Node node, double minX, double minY, double maxX, double maxY, IntConsumer action) {
+        if (node.count == 0 || !node.intersects(minX, minY, maxX, maxY)) {
+            return;
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                forEachWithin(child, minX, minY, maxX, maxY, action);
+            }
+            return;
+        }
+        for (int i = 0; i < node.idCount; i++) {
+            int id = node.ids[i];
+            if (xs[id] >= minX && xs[id] <= maxX && ys[id] >= minY && ys[id] <= maxY) {
+                action.accept(id);
+            }
+        }
+    }
+
+    public int countWithin(double minX, double minY, double maxX, double maxY) {
+        return root == null ? 0 : countWithin(root, minX, minY, maxX, maxY);
+    }
+
+    private int countWithin(Node node, double minX, double minY, double maxX, double maxY) {
+        if (node.count == 0 || !node.intersects(minX, minY, maxX, maxY)) {
+            return 0;
+        }
+        if (node.minX >= minX && node.minY >= minY && node.minX + node.size <= maxX
+                && node.minY + node.size <= maxY) {
+            return node.count;
+        }
+        int count = 0;
+        if (node.children != null) {
+            for (Node child : node.children) {
+                count += countWithin(child, minX, minY, maxX, maxY);
+            }
+            return count;
+        }
+        for (int i = 0; i < node.idCount; i++) {
+            int id = node.ids[i];
+            if (xs[id] >= minX && xs[id] <= maxX && ys[id] >= minY && ys[id] <= maxY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void forEachCluster(double minX, double minY, double maxX, double maxY, double clusterSize,
+                               ClusterVisitor visitor) {
+        if (!(clusterSize > 0)) {
+            throw new IllegalArgumentException();
+        }
+        if (root != null) {
+            forEachCluster(root, minX, minY, maxX, maxY, clusterSize, visitor);
+        }
+    }
+
+    private void forEachCluster(Node node, double minX, double minY, double maxX, double maxY, double clusterSize,
+                                ClusterVisitor visitor) {
+        if (node.count == 0 || !node.intersects(minX, minY, maxX, maxY)) {
+            return;
+        }
+        // Every square keeps the sum of its coordinates, so a cluster is reported without visiting its places.
+        if (node.size <= clusterSize) {
+            visitor.visit(node.count, node.sumX / node.count, node.sumY / node.count);
+        } else if (node.children != null) {
+            for (Node child : node.children) {
+                forEachCluster(child, minX, minY, maxX, maxY, clusterSize, visitor);
+            }
+        } else {
+            for (int i = 0; i < node.idCount; i++) {
+                int id = node.ids[i];
+                if (xs[id] >= minX && xs[id] <= maxX && ys[id] >= minY && ys[id] <= maxY) {
+                    visitor.visit(1, xs[id], ys[id]);
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (present.length < capacity) {
+            int length = Math.max(capacity, present.length + (present.length >> 1));
+            xs = Arrays.copyOf(xs, length);
+            ys = Arrays.copyOf(ys, length);
+            present = Arrays.copyOf(present, length);
+        }
+    }
+
+    private void grow(double x, double y) {
+        // The root doubles towards the new point; its corners stay multiples of its size, so they stay exact.
+        double size = root.size;
+        double minX = x < root.minX ? root.minX - size : root.minX;
+        double minY = y < root.minY ? root.minY - size : root.minY;
+        Node grown = new Node(minX, minY, size * 2);
+        grown.ids = null;
+        grown.children = new Node[4];
+        int quadrant = grown.quadrant(root.minX, root.minY);
+        for (int i = 0; i < 4; i++) {
+            grown.children[i] = i == quadrant ? root
+                    : new Node(minX + (i & 1) * size, minY + (i >> 1) * size, size);
+        }
+        grown.count = root.count;
+        grown.sumX = root.sumX;
+        grown.sumY = root.sumY;
+        root = grown;
+    }
+
+    private void split(Node node) {
+        double half = node.size / 2;
+        node.children = new Node[4];
+        for (int i = 0; i < 4; i++) {
+            node.children[i] = new Node(node.minX + (i & 1) * half, node.minY + (i >> 1) * half, half);
+        }
+        for (int i = 0; i < node.idCount; i++) {
+            int id = node.ids[i];
+            Node child = node.children[node.quadrant(xs[id], ys[id])];
+            child.add(xs[id], ys[id]);
+            child.append(id);
+        }
+        node.ids = null;
+        node.idCount = 0;
+    }
+
+    private int gather(Node node, int[] ids, int at) {
+        if (node.children == null) {
+            System.arraycopy(node.ids, 0, ids, at, node.idCount);
+            return at + node.idCount;
+        }
+        for (Node child : node.children) {
+            at = gather(child, ids, at);
+        }
+        return at;
+    }
+
+    private static final class Node {
+        private final double minX;
+        private final double minY;
+        private final double size;
+        private int count;
+        private double sumX;
+        private double sumY;
+        private Node[] children;
+        private int[] ids = new int[BUCKET];
+        private int idCount;
+
+        Node(double minX, double minY, double size) {
+            this.minX = minX;
+            this.minY = minY;
+            this.size = size;
+        }
+
+        boolean contains(double x, double y) {
+            return x >= minX && x < minX + size && y >= minY && y < minY + size;
+        }
+
+        boolean intersects(double minX, double minY, double maxX, double maxY) {
+            return this.minX <= maxX && this.minX + size >= minX && this.minY <= maxY && this.minY + size >= minY;
+        }
+
+        boolean divisible() {
+            // Coincident places would otherwise split a square until its halves were no longer representable.
+            return size / 2 > Math.ulp(Math.abs(minX) + Math.abs(minY) + size) * BUCKET;
+        }
+
+        int quadrant(double x, double y) {
+            double half = size / 2;
+            return (x >= minX + half ? 1 : 0) | (y >= minY + half ? 2 : 0);
+        }
+
+        double distanceSquared(double x, double y) {
+            double dx = Math.max(Math.max(minX - x, x - (minX + size)), 0);
+            double dy = Math.max(Math.max(minY - y, y - (minY + size)), 0);
+            return dx * dx + dy * dy;
+        }
+
+        void add(double x, double y) {
+            count++;
+            sumX += x;
+            sumY += y;
+        }
+
+        void subtract(double x, double y) {
+            count--;
+            if (count == 0) {
+                sumX = 0;
+                sumY = 0;
+            } else {
+                sumX -= x;
+                sumY -= y;
+            }
+        }
+
+        void append(int id) {
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[idCount++] = id;
+        }
+    }
+
+    private static final class Search {
+        private final double x;
+        private final double y;
+        private final double limit;
+        private final int[] best;
+        private final double[] distances;
+        private int found;
+
+        Search(double x, double y, int capacity, double limit) {
+            this.x = x;
+            this.y = y;
+            this.limit = limit;
+            best = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        double bound() {
+            return found == best.length ? distances[found - 1] : limit;
+        }
+
+        void offer(int id, double distance) {
+            if (distance > limit || found == best.length && distance >= distances[found - 1]) {
+                return;
+            }
+            int slot = found < best.length ? found++ : found - 1;
+            while (slot > 0 && distances[slot - 1] > distance) {
+                best[slot] = best[slot - 1];
+                distances[slot] = distances[slot - 1];
+                slot--;
+            }
+            best[slot] = id;
+            distances[slot] = distance;
+        }
+    }
+}
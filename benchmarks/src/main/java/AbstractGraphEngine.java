@@ -0,0 +1,124 @@
+import cities.bench.GraphEngine;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public abstract class AbstractGraphEngine implements GraphEngine {
+    private Integer[] places = new Integer[0];
+    protected Graph<Integer> graph;
+
+    // Places are boxed once, the way callers holding place objects would, so boxing stays out of the measurements.
+    protected Integer place(int node) {
+        if (node >= places.length) {
+            int length = places.length;
+            places = Arrays.copyOf(places, Math.max(node + 1, length * 2));
+            for (int i = length; i < places.length; i++) {
+                places[i] = i;
+            }
+        }
+        return places[node];
+    }
+
+    @Override
+    public boolean isMutable() {
+        return true;
+    }
+
+    @Override
+    public void add(int node) {
+        graph.add(place(node));
+    }
+
+    @Override
+    public void remove(int node) {
+        graph.remove(place(node));
+    }
+
+    @Override
+    public void connect(int node1, int node2, int weight) {
+        graph.connect(place(node1), place(node2), "Road", weight);
+    }
+
+    @Override
+    public void disconnect(int node1, int node2) {
+        graph.disconnect(place(node1), place(node2));
+    }
+
+    @Override
+    public void setConnectionWeight(int node1, int node2, int weight) {
+        graph.setConnectionWeight(place(node1), place(node2), weight);
+    }
+
+    @Override
+    public int getEdgeWeight(int node1, int node2) {
+        Edge<Integer> edge = graph.getEdgeBetween(place(node1), place(node2));
+        return edge == null ? -1 : edge.getWeight();
+    }
+
+    @Override
+    public int getDegree(int node) {
+        return graph.getEdgesFrom(place(node)).size();
+    }
+
+    @Override
+    public int countNodes() {
+        return graph.getNodes().size();
+    }
+
+    @Override
+    public boolean pathExists(int from, int to) {
+        return graph.pathExists(place(from), place(to));
+    }
+
+    @Override
+    public int getPathLength(int from, int to) {
+        List<Edge<Integer>> path = graph.getPath(place(from), place(to));
+        return path == null ? -1 : path.size();
+    }
+
+    @Override
+    public int load(Path file, boolean parallel) throws IOException {
+        return loadListGraph(file, parallel).getNodes().size();
+    }
+
+    protected static ListGraph<T> loadListGraph(Path file, boolean parallel) throws IOException {
+        ListGraph<T> loaded = new ListGraph<>();
+        if (parallel) {
+            GraphBulkLoader.load(file, new GraphFileParser.PlaceBuilder<T>() {
+                @Override
+                public void background(String url) {
+                }
+
+                @Override
+                public T place(String name, double x, double y) {
+                    T place = new T(name, x, y);
+                    loaded.add(place);
+                    return place;
+                }
+            }, ForkJoinPool.commonPool()).connectTo(loaded);
+        } else {
+            GraphFileParser.load(file, new GraphFileParser.Builder<T>() {
+                @Override
+                public void background(String url) {
+                }
+
+                @Override
+                public T place(String name, double x, double y) {
+                    T place = new T(name, x, y);
+                    loaded.add(place);
+                    return place;
+                }
+
+                @Override
+                public void connection(T from, T to, String name, int weight) {
+                    if (loaded.getEdgeBetween(from, to) == null) {
+                        loaded.connect(from, to, name, weight);
+                    }
+                }
+            });
+        }
+        return loaded;
+    }
+}
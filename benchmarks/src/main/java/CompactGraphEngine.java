@@ -0,0 +1,32 @@
+import cities.bench.SyntheticGraph;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class CompactGraphEngine extends AbstractGraphEngine {
+    @Override
+    public void build(SyntheticGraph synthetic) {
+        ListGraph<Integer> source = new ListGraph<>();
+        for (int node = 0; node < synthetic.getNodes(); node++) {
+            source.add(place(node));
+        }
+        synthetic.forEachEdge((from, to, weight) -> source.connect(place(from), place(to), "Road", weight));
+        graph = CompactGraph.of(source);
+    }
+
+    @Override
+    public void setRouteMode(String mode) {
+        if (RouteMode.valueOf(mode) != RouteMode.DIJKSTRA) {
+            throw new UnsupportedOperationException("CompactGraph only searches with DIJKSTRA");
+        }
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
+    @Override
+    public int load(Path file, boolean parallel) throws IOException {
+        return CompactGraph.of(loadListGraph(file, parallel)).getNodes().size();
+    }
+}
@@ -0,0 +1,21 @@
+import cities.bench.SyntheticGraph;
+
+public class ConcurrentGraphEngine extends AbstractGraphEngine {
+    private ConcurrentGraph<Integer> concurrentGraph;
+
+    @Override
+    public void build(SyntheticGraph synthetic) {
+        concurrentGraph = new ConcurrentGraph<>();
+        concurrentGraph.setCoordinates(synthetic::getX, synthetic::getY);
+        for (int node = 0; node < synthetic.getNodes(); node++) {
+            concurrentGraph.add(place(node));
+        }
+        synthetic.forEachEdge((from, to, weight) -> concurrentGraph.connect(place(from), place(to), "Road", weight));
+        graph = concurrentGraph;
+    }
+
+    @Override
+    public void setRouteMode(String mode) {
+        concurrentGraph.setRouteMode(RouteMode.valueOf(mode));
+    }
+}
@@ -0,0 +1,21 @@
+import cities.bench.SyntheticGraph;
+
+public class ListGraphEngine extends AbstractGraphEngine {
+    private ListGraph<Integer> listGraph;
+
+    @Override
+    public void build(SyntheticGraph synthetic) {
+        listGraph = new ListGraph<>();
+        listGraph.setCoordinates(synthetic::getX, synthetic::getY);
+        for (int node = 0; node < synthetic.getNodes(); node++) {
+            listGraph.add(place(node));
+        }
+        synthetic.forEachEdge((from, to, weight) -> listGraph.connect(place(from), place(to), "Road", weight));
+        graph = listGraph;
+    }
+
+    @Override
+    public void setRouteMode(String mode) {
+        listGraph.setRouteMode(RouteMode.valueOf(mode));
+    }
+}
@@ -0,0 +1,32 @@
+package cities.bench;
+
+import java.util.Arrays;
+import java.util.List;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    // Same command line as the JMH launcher, except that -prof gc is on unless other profilers are requested.
+    // The 10 million place parameters need a large heap: pass -jvmArgsAppend -Xmx24g or narrow with -p nodes=...
+    public static void main(String[] args) throws Exception {
+        List<String> informational = Arrays.asList("-h", "-l", "-lp", "-lprof", "-lrf");
+        for (String arg : args) {
+            if (informational.contains(arg)) {
+                org.openjdk.jmh.Main.main(args);
+                return;
+            }
+        }
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
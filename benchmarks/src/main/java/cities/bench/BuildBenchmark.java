@@ -0,0 +1,35 @@
+package cities.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BuildBenchmark {
+    @Param({"ListGraph", "ConcurrentGraph", "CompactGraph"})
+    public String engine;
+
+    @Param({"10", "1000", "100000", "1000000", "10000000"})
+    public int nodes;
+
+    @Param({"4", "8"})
+    public int degree;
+
+    private SyntheticGraph synthetic;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        synthetic = new SyntheticGraph(nodes, degree, 42);
+    }
+
+    @Benchmark
+    public GraphEngine build() {
+        GraphEngine graph = GraphEngine.create(engine);
+        graph.build(synthetic);
+        return graph;
+    }
+}
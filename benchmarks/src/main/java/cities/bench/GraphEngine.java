@@ -0,0 +1,47 @@
+package cities.bench;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+
+// JMH refuses benchmarks in the default package and a named package cannot import the default-package graph
+// classes, so every engine is reached through a default-package adapter loaded by name: create("ListGraph")
+// instantiates ListGraphEngine. Another engine only needs its own adapter to run the whole suite.
+public interface GraphEngine {
+    void build(SyntheticGraph graph);
+
+    void setRouteMode(String mode);
+
+    boolean isMutable();
+
+    void add(int node);
+
+    void remove(int node);
+
+    void connect(int node1, int node2, int weight);
+
+    void disconnect(int node1, int node2);
+
+    void setConnectionWeight(int node1, int node2, int weight);
+
+    int getEdgeWeight(int node1, int node2);
+
+    int getDegree(int node);
+
+    int countNodes();
+
+    boolean pathExists(int from, int to);
+
+    int getPathLength(int from, int to);
+
+    int load(Path file, boolean parallel) throws IOException;
+
+    static GraphEngine create(String name) {
+        try {
+            return (GraphEngine) Class.forName(name + "Engine").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException
+                | InvocationTargetException e) {
+            throw new IllegalArgumentException("No engine adapter " + name + "Engine", e);
+        }
+    }
+}
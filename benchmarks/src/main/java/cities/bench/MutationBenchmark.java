@@ -0,0 +1,78 @@
+package cities.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MutationBenchmark {
+    private static final int PAIRS = 1024;
+
+    @Param({"ListGraph", "ConcurrentGraph"})
+    public String engine;
+
+    @Param({"10", "1000", "100000", "1000000", "10000000"})
+    public int nodes;
+
+    @Param({"4", "8"})
+    public int degree;
+
+    private GraphEngine graph;
+    private int[] first;
+    private int[] second;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void build() {
+        graph = GraphEngine.create(engine);
+        if (!graph.isMutable()) {
+            throw new IllegalArgumentException(engine + " is read-only");
+        }
+        graph.build(new SyntheticGraph(nodes, degree, 42));
+        // Pairs that are not connected yet, so connect then disconnect leaves the graph as it was.
+        SplittableRandom random = new SplittableRandom(7);
+        first = new int[PAIRS];
+        second = new int[PAIRS];
+        for (int i = 0; i < PAIRS; ) {
+            int node1 = random.nextInt(nodes);
+            int node2 = random.nextInt(nodes);
+            if (node1 != node2 && graph.getEdgeWeight(node1, node2) < 0) {
+                first[i] = node1;
+                second[i++] = node2;
+            }
+        }
+    }
+
+    private int next() {
+        next = (next + 1) & (PAIRS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public void connectDisconnect() {
+        int pair = next();
+        graph.connect(first[pair], second[pair], 10);
+        graph.disconnect(first[pair], second[pair]);
+    }
+
+    @Benchmark
+    public void setConnectionWeight() {
+        int node = first[next()];
+        int neighbour = node + 1 < nodes ? node + 1 : node - 1;
+        graph.setConnectionWeight(node, neighbour, 1 + (node & 63));
+    }
+
+    @Benchmark
+    public void addConnectRemove() {
+        int pair = next();
+        graph.add(nodes);
+        graph.connect(nodes, first[pair], 5);
+        graph.connect(nodes, second[pair], 5);
+        graph.remove(nodes);
+    }
+}
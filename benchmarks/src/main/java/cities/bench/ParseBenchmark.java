@@ -0,0 +1,47 @@
+package cities.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+    @Param({"ListGraph"})
+    public String engine;
+
+    @Param({"1000", "100000", "1000000"})
+    public int nodes;
+
+    @Param({"4", "8"})
+    public int degree;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private GraphEngine graph;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        graph = GraphEngine.create(engine);
+        file = Files.createTempFile("synthetic", ".graph");
+        new SyntheticGraph(nodes, degree, 42).write(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        return graph.load(file, parallel);
+    }
+}
@@ -0,0 +1,84 @@
+package cities.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"ListGraph", "ConcurrentGraph", "CompactGraph"})
+    public String engine;
+
+    @Param({"10", "1000", "100000", "1000000", "10000000"})
+    public int nodes;
+
+    @Param({"4", "8"})
+    public int degree;
+
+    @Param({"DIJKSTRA"})
+    public String mode;
+
+    private GraphEngine graph;
+    private int[] from;
+    private int[] to;
+
+    @Setup(Level.Trial)
+    public void build() {
+        graph = GraphEngine.create(engine);
+        graph.build(new SyntheticGraph(nodes, degree, 42));
+        graph.setRouteMode(mode);
+        SplittableRandom random = new SplittableRandom(7);
+        from = new int[QUERIES];
+        to = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = random.nextInt(nodes);
+            to[i] = random.nextInt(nodes);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            next = (next + 1) & (QUERIES - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public int getPath(Cursor cursor) {
+        int query = cursor.next();
+        return graph.getPathLength(from[query], to[query]);
+    }
+
+    @Benchmark
+    public boolean pathExists(Cursor cursor) {
+        int query = cursor.next();
+        return graph.pathExists(from[query], to[query]);
+    }
+
+    @Benchmark
+    public int getEdgesFrom(Cursor cursor) {
+        return graph.getDegree(from[cursor.next()]);
+    }
+
+    @Benchmark
+    public int getEdgeBetween(Cursor cursor) {
+        int node = from[cursor.next()];
+        return graph.getEdgeWeight(node, node + 1 < nodes ? node + 1 : node - 1);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int getNodes() {
+        return graph.countNodes();
+    }
+}
@@ -0,0 +1,106 @@
+package cities.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// A square lattice where every place links to its next degree / 2 lattice neighbours, so the average degree is
+// close to degree and the graph is connected at every size. Edges and weights are a pure function of the
+// parameters and are replayed rather than stored.
+public final class SyntheticGraph {
+    public interface EdgeVisitor {
+        void edge(int from, int to, int weight);
+    }
+
+    private final int nodes;
+    private final int side;
+    private final int[] offsets;
+    private final long seed;
+
+    public SyntheticGraph(int nodes, int degree, long seed) {
+        if (nodes < 1 || degree < 2) {
+            throw new IllegalArgumentException();
+        }
+        this.nodes = nodes;
+        this.side = (int) Math.ceil(Math.sqrt(nodes));
+        this.seed = seed;
+        int[] candidates = {1, side, side + 1, side - 1, 2, 2 * side, 2 * side + 1, 2 * side - 1, 3, 3 * side,
+                2 * side + 2, 2 * side - 2, 3 * side + 1, 3 * side - 1, 4, 4 * side};
+        int links = Math.min(degree / 2, candidates.length);
+        offsets = new int[links];
+        int count = 0;
+        for (int candidate : candidates) {
+            if (count == links) {
+                break;
+            }
+            boolean repeated = candidate < 1;
+            for (int i = 0; i < count; i++) {
+                repeated |= offsets[i] == candidate;
+            }
+            if (!repeated) {
+                offsets[count++] = candidate;
+            }
+        }
+        if (count < links) {
+            throw new IllegalArgumentException("Degree too high for " + nodes + " places");
+        }
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public double getX(int node) {
+        return node % side;
+    }
+
+    public double getY(int node) {
+        return node / side;
+    }
+
+    public void forEachEdge(EdgeVisitor visitor) {
+        for (int node = 0; node < nodes; node++) {
+            for (int offset : offsets) {
+                int neighbour = node + offset;
+                if (neighbour < nodes) {
+                    visitor.edge(node, neighbour, weight(node, neighbour));
+                }
+            }
+        }
+    }
+
+    public int weight(int from, int to) {
+        long key = seed ^ ((long) from << 32 | to);
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return 1 + (int) (((key ^ (key >>> 33)) >>> 1) % 100);
+    }
+
+    public void write(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("file:europa.gif");
+            writer.newLine();
+            for (int node = 0; node < nodes; node++) {
+                if (node > 0) {
+                    writer.write(';');
+                }
+                writer.write("P" + node + ";" + getX(node) + ";" + getY(node));
+            }
+            writer.newLine();
+            IOException[] failure = new IOException[1];
+            forEachEdge((from, to, weight) -> {
+                try {
+                    writer.write("P" + from + ";P" + to + ";Road;" + weight);
+                    writer.newLine();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+}
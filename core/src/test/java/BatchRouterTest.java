@@ -0,0 +1,51 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRouterTest {
+    @Test
+    void throwingResolverFailsOnlyItsQuery() {
+        ListGraph<String> graph = new ListGraph<>();
+        graph.add("A");
+        graph.add("B");
+        graph.connect("A", "B", "AB", 4);
+        List<BatchRouter.Query> queries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            queries.add(i % 7 == 3 ? new BatchRouter.Query("A", "Broken") : new BatchRouter.Query("A", "B"));
+        }
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try (BatchRouter<String> router = new BatchRouter<>(graph, name -> {
+            if (name.equals("Broken")) {
+                throw new IllegalStateException("resolver failed");
+            }
+            return graph.getNodes().contains(name) ? name : null;
+        }, pool, 4)) {
+            for (boolean ordered : new boolean[] {true, false}) {
+                List<BatchRouter.Result<String>> results = new ArrayList<>();
+                assertTimeoutPreemptively(Duration.ofSeconds(30),
+                        () -> router.route(queries.iterator(), ordered, results::add));
+                assertEquals(queries.size(), results.size());
+                if (ordered) {
+                    for (int i = 0; i < results.size(); i++) {
+                        assertEquals(i, results.get(i).getIndex());
+                    }
+                }
+                for (BatchRouter.Result<String> result : results) {
+                    if (result.getIndex() % 7 == 3) {
+                        assertEquals(BatchRouter.Status.FAILED, result.getStatus());
+                        assertEquals("resolver failed", result.getError().getMessage());
+                    } else {
+                        assertEquals(BatchRouter.Status.FOUND, result.getStatus());
+                        assertEquals(4, result.getDistance());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
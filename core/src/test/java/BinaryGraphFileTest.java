@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryGraphFileTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void binaryFileMatchesTheTextFile() throws IOException {
+        Path text = writeRandomMap(new Random(6), 300, 700);
+        Path binary = directory.resolve("map.bin");
+        BinaryGraphFile.textToBinary(text, binary);
+        ListGraph<String> expected = load(text);
+
+        MappedGraph mapped = MappedGraph.open(binary, true);
+        assertEquals("europa.gif", mapped.getBackground());
+        assertEquals(expected.getNodes(), mapped.getNodes());
+        for (String place : expected.getNodes()) {
+            Map<String, String> edges = new HashMap<>();
+            for (Edge<String> edge : expected.getEdgesFrom(place)) {
+                edges.put(edge.getDestination(), edge.getName() + ";" + edge.getWeight());
+            }
+            Map<String, String> mappedEdges = new HashMap<>();
+            for (Edge<String> edge : mapped.getEdgesFrom(place)) {
+                mappedEdges.put(edge.getDestination(), edge.getName() + ";" + edge.getWeight());
+            }
+            assertEquals(edges, mappedEdges);
+        }
+
+        List<String> places = new ArrayList<>(expected.getNodes());
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            String from = places.get(random.nextInt(places.size()));
+            String to = places.get(random.nextInt(places.size()));
+            Long distance = TestGraphs.distancesFrom(expected, from).get(to);
+            assertEquals(distance != null, mapped.pathExists(from, to));
+            TestGraphs.assertShortest(mapped, from, to, distance, mapped.getPath(from, to));
+        }
+    }
+
+    @Test
+    void textSurvivesARoundTrip() throws IOException {
+        Path text = writeRandomMap(new Random(8), 120, 300);
+        Path binary = directory.resolve("map.bin");
+        Path back = directory.resolve("back.graph");
+        BinaryGraphFile.textToBinary(text, binary);
+        BinaryGraphFile.binaryToText(binary, back);
+
+        ListGraph<String> original = load(text);
+        ListGraph<String> copy = load(back);
+        assertEquals(original.getNodes(), copy.getNodes());
+        for (String place : original.getNodes()) {
+            for (Edge<String> edge : original.getEdgesFrom(place)) {
+                Edge<String> copied = copy.getEdgeBetween(place, edge.getDestination());
+                assertNotNull(copied);
+                assertEquals(edge.getName(), copied.getName());
+                assertEquals(edge.getWeight(), copied.getWeight());
+            }
+            assertEquals(original.getEdgesFrom(place).size(), copy.getEdgesFrom(place).size());
+        }
+    }
+
+    @Test
+    void corruptionIsDetected() throws IOException {
+        Path text = writeRandomMap(new Random(9), 50, 100);
+        Path binary = directory.resolve("map.bin");
+        BinaryGraphFile.textToBinary(text, binary);
+        byte[] original = Files.readAllBytes(binary);
+
+        byte[] header = original.clone();
+        header[BinaryGraphFile.PLACES_AT] ^= 1;
+        Files.write(binary, header);
+        IOException e = assertThrows(IOException.class, () -> MappedGraph.open(binary));
+        assertTrue(e.getMessage().contains("header checksum"), e.getMessage());
+
+        byte[] payload = original.clone();
+        payload[payload.length - 1] ^= 1;
+        Files.write(binary, payload);
+        // Payload verification is opt-in; the default open only checks the header.
+        assertEquals(50, MappedGraph.open(binary).nodeCount());
+        e = assertThrows(IOException.class, () -> MappedGraph.open(binary, true));
+        assertTrue(e.getMessage().contains("payload checksum"), e.getMessage());
+
+        Files.write(binary, Arrays.copyOf(original, BinaryGraphFile.HEADER_BYTES - 1));
+        assertThrows(IOException.class, () -> MappedGraph.open(binary));
+    }
+
+    @Test
+    void selfLoopsAreSkippedByEveryLoader() throws IOException {
+        Path text = directory.resolve("loop.graph");
+        Files.writeString(text, "europa.gif\nA;1;2;B;3;4\nA;A;Train;3\nA;B;Bus;5\n");
+
+        ListGraph<String> parsed = new ListGraph<>();
+        GraphFileParser.Report report = GraphFileParser.load(text, new GraphFileParser.Builder<String>() {
+            @Override
+            public void background(String location) {
+            }
+
+            @Override
+            public String place(String name, double x, double y) {
+                parsed.add(name);
+                return name;
+            }
+
+            @Override
+            public void connection(String from, String to, String name, int weight) {
+                parsed.connect(from, to, name, weight);
+            }
+        });
+        assertEquals(1, report.getConnectionCount());
+        assertEquals(1, report.getSkippedLines());
+
+        ListGraph<String> bulk = new ListGraph<>();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        GraphBulkLoader.Result<String> loaded = GraphBulkLoader.load(text, new GraphFileParser.PlaceBuilder<String>() {
+            @Override
+            public void background(String location) {
+            }
+
+            @Override
+            public String place(String name, double x, double y) {
+                bulk.add(name);
+                return name;
+            }
+        }, pool);
+        pool.shutdown();
+        loaded.connectTo(bulk);
+        assertEquals(1, loaded.getReport().getSkippedLines());
+
+        Path binary = directory.resolve("loop.bin");
+        BinaryGraphFile.textToBinary(text, binary);
+        MappedGraph mapped = MappedGraph.open(binary, true);
+        for (Graph<String> graph : List.<Graph<String>>of(parsed, bulk, mapped)) {
+            assertNull(graph.getEdgeBetween("A", "A"));
+            assertEquals(5, graph.getEdgeBetween("A", "B").getWeight());
+            assertEquals(1, graph.getEdgesFrom("A").size());
+        }
+    }
+
+    @Test
+    void nonFiniteCoordinatesAreMalformed() throws IOException {
+        for (String coordinate : List.of("NaN", "Infinity", "-Infinity")) {
+            Path text = directory.resolve("bad.graph");
+            Files.writeString(text, "europa.gif\nA;1;2;B;" + coordinate + ";4\n");
+            IOException e = assertThrows(IOException.class, () -> load(text));
+            assertTrue(e.getMessage().contains("bad number " + coordinate), e.getMessage());
+        }
+    }
+
+    private Path writeRandomMap(Random random, int placeCount, int connectionCount) throws IOException {
+        ListGraph<TestGraphs.Place> graph = TestGraphs.randomGraph(random, placeCount, connectionCount);
+        List<TestGraphs.Place> places = new ArrayList<>(graph.getNodes());
+        StringBuilder out = new StringBuilder("europa.gif\n");
+        for (int i = 0; i < places.size(); i++) {
+            TestGraphs.Place place = places.get(i);
+            out.append(i == 0 ? "" : ";").append(place).append(';').append(place.getX()).append(';')
+                    .append(place.getY());
+        }
+        out.append('\n');
+        for (TestGraphs.Place place : places) {
+            for (Edge<TestGraphs.Place> edge : graph.getEdgesFrom(place)) {
+                if (place.toString().compareTo(edge.getDestination().toString()) < 0) {
+                    out.append(place).append(';').append(edge.getDestination()).append(';').append(edge.getName())
+                            .append(';').append(edge.getWeight()).append('\n');
+                }
+            }
+        }
+        Path text = directory.resolve("map" + placeCount + ".graph");
+        Files.writeString(text, out);
+        return text;
+    }
+
+    private static ListGraph<String> load(Path text) throws IOException {
+        ListGraph<String> graph = new ListGraph<>();
+        GraphFileParser.load(text, new GraphFileParser.Builder<String>() {
+            @Override
+            public void background(String location) {
+            }
+
+            @Override
+            public String place(String name, double x, double y) {
+                graph.add(name);
+                return name;
+            }
+
+            @Override
+            public void connection(String from, String to, String name, int weight) {
+                graph.connect(from, to, name, weight);
+            }
+        });
+        return graph;
+    }
+}
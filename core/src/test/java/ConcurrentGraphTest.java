@@ -0,0 +1,241 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentGraphTest {
+    private static final int CHECKS = 100;
+    // Written weights start above anything randomGraph creates, so each one names the write that made it.
+    private static final int WRITTEN = 1 << 20;
+
+    @Test
+    void snapshotsAreConsistentCutsUnderConcurrentWriters() throws Exception {
+        Random random = new Random(5);
+        ListGraph<TestGraphs.Place> base = TestGraphs.randomGraph(random, 200, 600);
+        List<List<Edge<TestGraphs.Place>>> owned = splitEdges(base, 2);
+        Map<Edge<TestGraphs.Place>, Integer> initial = new HashMap<>();
+        for (List<Edge<TestGraphs.Place>> edges : owned) {
+            for (Edge<TestGraphs.Place> edge : edges) {
+                initial.put(edge, edge.getWeight());
+            }
+        }
+        ConcurrentGraph<TestGraphs.Place> graph = new ConcurrentGraph<>(base);
+        graph.enablePathCache(128);
+        List<TestGraphs.Place> places = new ArrayList<>(base.getNodes());
+        List<TestGraphs.Place> chain = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            chain.add(new TestGraphs.Place("N" + i, 2000 + i, 2000));
+        }
+
+        // Writers keep going until every reader is done, so each check races against live writes.
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        AtomicBoolean reading = new AtomicBoolean(true);
+        try {
+            List<Future<Integer>> writers = new ArrayList<>();
+            for (List<Edge<TestGraphs.Place>> edges : owned) {
+                writers.add(executor.submit(() -> {
+                    int write = 0;
+                    while (reading.get() && write < WRITTEN) {
+                        write++;
+                        Edge<TestGraphs.Place> edge = edges.get(write % edges.size());
+                        graph.setConnectionWeight(edge.getFrom(), edge.getDestination(), WRITTEN + write);
+                        // A short pause keeps the unfair write lock from starving the readers.
+                        LockSupport.parkNanos(20_000);
+                    }
+                    return write;
+                }));
+            }
+            Future<?> grower = executor.submit(() -> {
+                for (int i = 0; i < chain.size() && reading.get(); i++) {
+                    graph.add(chain.get(i));
+                    if (i > 0) {
+                        graph.connect(chain.get(i - 1), chain.get(i), "Chain", 1);
+                    }
+                    LockSupport.parkNanos(200_000);
+                }
+            });
+
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 3; reader++) {
+                long seed = reader;
+                readers.add(executor.submit(() -> {
+                    Random queries = new Random(seed);
+                    List<ListGraph<TestGraphs.Place>> kept = new ArrayList<>();
+                    List<Map<Edge<TestGraphs.Place>, Integer>> keptWeights = new ArrayList<>();
+                    Map<Edge<TestGraphs.Place>, Integer> lastSeen = new HashMap<>();
+                    for (int check = 0; check < CHECKS; check++) {
+                        ListGraph<TestGraphs.Place> snapshot = graph.snapshot();
+                        Map<Edge<TestGraphs.Place>, Integer> weights = assertConsistentCut(snapshot, owned, initial,
+                                chain);
+                        if (check % 32 == 0) {
+                            kept.add(snapshot);
+                            keptWeights.add(weights);
+                        }
+                        TestGraphs.Place from = places.get(queries.nextInt(places.size()));
+                        TestGraphs.Place to = places.get(queries.nextInt(places.size()));
+                        RouteMode mode = RouteMode.values()[queries.nextInt(RouteMode.values().length)];
+                        snapshot.prepareQueries(mode);
+                        TestGraphs.assertShortest(snapshot, from, to, TestGraphs.distancesFrom(snapshot, from).get(to),
+                                snapshot.getPath(from, to, mode));
+
+                        // Live reads are linearizable: a weight only ever grows, so no reader may see it shrink.
+                        List<Edge<TestGraphs.Place>> edges = owned.get(check % owned.size());
+                        Edge<TestGraphs.Place> edge = edges.get(queries.nextInt(edges.size()));
+                        int weight = graph.getEdgeBetween(edge.getFrom(), edge.getDestination()).getWeight();
+                        assertTrue(weight >= lastSeen.getOrDefault(edge, 0));
+                        lastSeen.put(edge, weight);
+                        assertPathConnects(graph.getPath(from, to), from, to);
+                    }
+                    // Snapshots taken while the writers ran still show exactly what they showed then.
+                    for (int i = 0; i < kept.size(); i++) {
+                        assertEquals(keptWeights.get(i), assertConsistentCut(kept.get(i), owned, initial, chain));
+                    }
+                    return null;
+                }));
+            }
+
+            try {
+                for (Future<?> reader : readers) {
+                    reader.get(2, TimeUnit.MINUTES);
+                }
+            } finally {
+                reading.set(false);
+            }
+            grower.get(2, TimeUnit.MINUTES);
+            ListGraph<TestGraphs.Place> last = graph.snapshot();
+            for (int writer = 0; writer < owned.size(); writer++) {
+                List<Edge<TestGraphs.Place>> edges = owned.get(writer);
+                int writes = writers.get(writer).get(2, TimeUnit.MINUTES);
+                assertTrue(writes > edges.size(), "writers barely overlapped the readers");
+                for (int i = 0; i < edges.size(); i++) {
+                    Edge<TestGraphs.Place> edge = edges.get(i);
+                    int write = writes - Math.floorMod(writes - i, edges.size());
+                    assertEquals(WRITTEN + write,
+                            last.getEdgeBetween(edge.getFrom(), edge.getDestination()).getWeight());
+                }
+            }
+            // The path cache saw every write; once the writers stop its answers must match a fresh search.
+            for (int i = 0; i < 200; i++) {
+                TestGraphs.Place from = places.get(random.nextInt(places.size()));
+                TestGraphs.Place to = places.get(random.nextInt(places.size()));
+                TestGraphs.assertShortest(last, from, to, TestGraphs.distancesFrom(last, from).get(to),
+                        graph.getPath(from, to));
+            }
+        } finally {
+            reading.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void snapshotIgnoresLaterWrites() {
+        ListGraph<String> graph = new ListGraph<>();
+        graph.add("A");
+        graph.add("B");
+        graph.add("C");
+        graph.connect("A", "B", "AB", 4);
+        graph.connect("B", "C", "BC", 5);
+        ListGraph<String> snapshot = graph.snapshot();
+
+        graph.setConnectionWeight("A", "B", 1);
+        graph.disconnect("B", "C");
+        graph.add("D");
+        graph.connect("C", "D", "CD", 2);
+        graph.remove("A");
+
+        assertTrue(snapshot.isSnapshot());
+        assertEquals(Set.of("A", "B", "C"), snapshot.getNodes());
+        assertEquals(4, snapshot.getEdgeBetween("B", "A").getWeight());
+        assertEquals(5, snapshot.getEdgeBetween("C", "B").getWeight());
+        assertEquals(9, snapshot.getDistances("A", List.of("C"))[0]);
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.connect("A", "C", "AC", 1));
+        assertNull(graph.getEdgeBetween("B", "C"));
+        assertEquals(1, graph.getSnapshotCount());
+    }
+
+    @Test
+    void pathNearRoutesInTheGraphsMode() {
+        Random random = new Random(11);
+        ListGraph<TestGraphs.Place> base = TestGraphs.randomGraph(random, 150, 400);
+        ConcurrentGraph<TestGraphs.Place> graph = new ConcurrentGraph<>(base);
+        List<TestGraphs.Place> places = new ArrayList<>(base.getNodes());
+        for (RouteMode mode : RouteMode.values()) {
+            graph.setRouteMode(mode);
+            for (int i = 0; i < 20; i++) {
+                TestGraphs.Place from = places.get(random.nextInt(places.size()));
+                TestGraphs.Place to = places.get(random.nextInt(places.size()));
+                TestGraphs.assertShortest(base, from, to, TestGraphs.distancesFrom(base, from).get(to),
+                        graph.getPathNear(from.getX(), from.getY(), to.getX(), to.getY()));
+            }
+        }
+    }
+
+    private static List<List<Edge<TestGraphs.Place>>> splitEdges(ListGraph<TestGraphs.Place> graph, int parts) {
+        List<List<Edge<TestGraphs.Place>>> split = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            split.add(new ArrayList<>());
+        }
+        int next = 0;
+        for (TestGraphs.Place place : graph.getNodes()) {
+            for (Edge<TestGraphs.Place> edge : graph.getEdgesFrom(place)) {
+                if (edge.getFrom().toString().compareTo(edge.getDestination().toString()) < 0) {
+                    split.get(next++ % parts).add(edge);
+                }
+            }
+        }
+        return split;
+    }
+
+    // Each writer's edges must show a prefix of its own writes, and the chain a prefix of its growth.
+    private static Map<Edge<TestGraphs.Place>, Integer> assertConsistentCut(ListGraph<TestGraphs.Place> snapshot,
+            List<List<Edge<TestGraphs.Place>>> owned, Map<Edge<TestGraphs.Place>, Integer> initial,
+            List<TestGraphs.Place> chain) {
+        Map<Edge<TestGraphs.Place>, Integer> weights = new HashMap<>();
+        for (List<Edge<TestGraphs.Place>> edges : owned) {
+            int latest = 0;
+            for (Edge<TestGraphs.Place> edge : edges) {
+                int weight = snapshot.getEdgeBetween(edge.getFrom(), edge.getDestination()).getWeight();
+                assertEquals(weight, snapshot.getEdgeBetween(edge.getDestination(), edge.getFrom()).getWeight());
+                weights.put(edge, weight);
+                if (weight > WRITTEN) {
+                    latest = Math.max(latest, weight - WRITTEN);
+                }
+            }
+            for (int i = 0; i < edges.size(); i++) {
+                int write = latest - Math.floorMod(latest - i, edges.size());
+                int expected = write > 0 ? WRITTEN + write : initial.get(edges.get(i));
+                assertEquals(expected, weights.get(edges.get(i)), "snapshot is not a prefix of the writes");
+            }
+        }
+        Set<TestGraphs.Place> nodes = snapshot.nodeView();
+        int present = 0;
+        while (present < chain.size() && nodes.contains(chain.get(present))) {
+            present++;
+        }
+        for (int i = present; i < chain.size(); i++) {
+            assertFalse(nodes.contains(chain.get(i)));
+        }
+        for (int i = 1; i < present - 1; i++) {
+            assertNotNull(snapshot.getEdgeBetween(chain.get(i), chain.get(i - 1)));
+            assertNotNull(snapshot.getEdgeBetween(chain.get(i - 1), chain.get(i)));
+        }
+        return weights;
+    }
+
+    private static void assertPathConnects(List<Edge<TestGraphs.Place>> path, TestGraphs.Place from,
+                                           TestGraphs.Place to) {
+        if (path == null) {
+            return;
+        }
+        TestGraphs.Place at = from;
+        for (Edge<TestGraphs.Place> edge : path) {
+            assertEquals(at, edge.getFrom());
+            at = edge.getDestination();
+        }
+        assertEquals(to, at);
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void committedRecordsReplayInOrder() throws IOException {
+        Path base = directory.resolve("map.graph");
+        Files.writeString(base, "europa.gif\n");
+        try (GraphJournal journal = GraphJournal.create(base)) {
+            journal.place("Oslo", 1.5, 2.25);
+            journal.place("Bergen", -3, 4);
+            journal.connection("Oslo", "Bergen", "E16", 460);
+            assertEquals(3, journal.commit());
+            journal.weight("Oslo", "Bergen", 470);
+            journal.disconnection("Oslo", "Bergen");
+            journal.removal("Bergen");
+            journal.background("norge.gif");
+            assertEquals(4, journal.commit());
+            // Never committed, so it must not survive.
+            journal.place("Trondheim", 0, 0);
+        }
+
+        Recorder recorder = new Recorder();
+        try (GraphJournal journal = GraphJournal.open(base, recorder)) {
+            assertEquals(7, journal.getRecordCount());
+        }
+        assertEquals(List.of("place Oslo 1.5 2.25", "place Bergen -3.0 4.0", "connection Oslo Bergen E16 460",
+                "weight Oslo Bergen 470", "disconnection Oslo Bergen", "removal Bergen", "background norge.gif"),
+                recorder.records);
+    }
+
+    @Test
+    void tornLastRecordIsDropped() throws IOException {
+        Path base = directory.resolve("map.graph");
+        Files.writeString(base, "europa.gif\n");
+        try (GraphJournal journal = GraphJournal.create(base)) {
+            journal.place("Oslo", 1, 2);
+            journal.commit();
+        }
+        long committed = Files.size(GraphJournal.journalPath(base));
+        Files.write(GraphJournal.journalPath(base), "0badc0de;P;Ber".getBytes(StandardCharsets.US_ASCII),
+                StandardOpenOption.APPEND);
+
+        Recorder recorder = new Recorder();
+        try (GraphJournal journal = GraphJournal.open(base, recorder)) {
+            assertEquals(1, journal.getRecordCount());
+            journal.place("Bergen", 3, 4);
+            journal.commit();
+        }
+        assertEquals(List.of("place Oslo 1.0 2.0"), recorder.records);
+        assertTrue(Files.size(GraphJournal.journalPath(base)) > committed);
+
+        Recorder reopened = new Recorder();
+        GraphJournal.open(base, reopened).close();
+        assertEquals(List.of("place Oslo 1.0 2.0", "place Bergen 3.0 4.0"), reopened.records);
+    }
+
+    @Test
+    void corruptRecordInTheMiddleIsRejected() throws IOException {
+        Path base = directory.resolve("map.graph");
+        Files.writeString(base, "europa.gif\n");
+        try (GraphJournal journal = GraphJournal.create(base)) {
+            journal.place("Oslo", 1, 2);
+            journal.place("Bergen", 3, 4);
+            journal.commit();
+        }
+        byte[] bytes = Files.readAllBytes(GraphJournal.journalPath(base));
+        bytes[12] ^= 1;
+        Files.write(GraphJournal.journalPath(base), bytes);
+
+        IOException e = assertThrows(IOException.class, () -> GraphJournal.open(base, new Recorder()));
+        assertTrue(e.getMessage().contains("line 1"), e.getMessage());
+    }
+
+    @Test
+    void separatorsAreRejectedInFields() throws IOException {
+        Path base = directory.resolve("map.graph");
+        Files.writeString(base, "europa.gif\n");
+        try (GraphJournal journal = GraphJournal.create(base)) {
+            assertThrows(IllegalArgumentException.class, () -> journal.place("Oslo;Bergen", 0, 0));
+            assertThrows(IllegalArgumentException.class, () -> journal.connection("Oslo", "Bergen", "E\n16", 1));
+            assertThrows(IllegalArgumentException.class, () -> journal.place("Oslo", Double.NaN, 0));
+            assertEquals(0, journal.getPendingCount());
+        }
+    }
+
+    @Test
+    void compactionEmptiesTheJournal() throws IOException {
+        Path base = directory.resolve("map.graph");
+        Files.writeString(base, "europa.gif\n");
+        try (GraphJournal journal = GraphJournal.create(base)) {
+            journal.place("Oslo", 1, 2);
+            journal.commit();
+            journal.compact(out -> out.write("europa.gif\nOslo;1.0;2.0\n"));
+            assertEquals(0, journal.getRecordCount());
+            assertEquals(0, journal.getJournalBytes());
+        }
+        assertEquals("europa.gif\nOslo;1.0;2.0\n", Files.readString(base));
+        Recorder recorder = new Recorder();
+        GraphJournal.open(base, recorder).close();
+        assertTrue(recorder.records.isEmpty());
+    }
+
+    private static final class Recorder implements GraphJournal.Replay {
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void background(String file) {
+            records.add("background " + file);
+        }
+
+        @Override
+        public void place(String name, double x, double y) {
+            records.add("place " + name + " " + x + " " + y);
+        }
+
+        @Override
+        public void connection(String from, String to, String name, int weight) {
+            records.add("connection " + from + " " + to + " " + name + " " + weight);
+        }
+
+        @Override
+        public void disconnection(String from, String to) {
+            records.add("disconnection " + from + " " + to);
+        }
+
+        @Override
+        public void weight(String from, String to, int weight) {
+            records.add("weight " + from + " " + to + " " + weight);
+        }
+
+        @Override
+        public void removal(String name) {
+            records.add("removal " + name);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingTest {
+    private static final int QUERIES = 150;
+
+    @Test
+    void everyRouteModeFindsShortestPaths() {
+        Random random = new Random(1);
+        ListGraph<TestGraphs.Place> graph = TestGraphs.randomGraph(random, 400, 1000);
+        assertAllModesShortest(graph, random);
+    }
+
+    @Test
+    void routesStayShortestAfterEdits() {
+        Random random = new Random(2);
+        ListGraph<TestGraphs.Place> graph = TestGraphs.randomGraph(random, 300, 800);
+        assertAllModesShortest(graph, random);
+
+        // Lowering and raising weights, cutting roads and dropping places must all reach the derived indexes.
+        List<TestGraphs.Place> places = new ArrayList<>(graph.getNodes());
+        for (int i = 0; i < 60; i++) {
+            TestGraphs.Place place = places.get(random.nextInt(places.size()));
+            List<Edge<TestGraphs.Place>> edges = new ArrayList<>(graph.getEdgesFrom(place));
+            if (edges.isEmpty()) {
+                continue;
+            }
+            Edge<TestGraphs.Place> edge = edges.get(random.nextInt(edges.size()));
+            switch (i % 3) {
+                case 0:
+                    graph.setConnectionWeight(place, edge.getDestination(), edge.getWeight() / 2);
+                    break;
+                case 1:
+                    graph.setConnectionWeight(place, edge.getDestination(), edge.getWeight() * 3 + 1);
+                    break;
+                default:
+                    graph.disconnect(place, edge.getDestination());
+                    break;
+            }
+        }
+        for (int i = 0; i < 5; i++) {
+            TestGraphs.Place removed = places.remove(random.nextInt(places.size()));
+            graph.remove(removed);
+        }
+        assertAllModesShortest(graph, random);
+    }
+
+    @Test
+    void cachedPathsFollowWeightChanges() {
+        Random random = new Random(3);
+        ListGraph<TestGraphs.Place> graph = TestGraphs.randomGraph(random, 200, 600);
+        graph.enablePathCache(64);
+        List<TestGraphs.Place> places = new ArrayList<>(graph.getNodes());
+        for (int round = 0; round < 40; round++) {
+            TestGraphs.Place from = places.get(random.nextInt(places.size()));
+            TestGraphs.Place to = places.get(random.nextInt(places.size()));
+            List<Edge<TestGraphs.Place>> path = graph.getPath(from, to);
+            TestGraphs.assertShortest(graph, from, to, TestGraphs.distancesFrom(graph, from).get(to), path);
+            if (path != null && !path.isEmpty()) {
+                Edge<TestGraphs.Place> edge = path.get(random.nextInt(path.size()));
+                int weight = round % 2 == 0 ? Math.min(edge.getWeight() * 5 + 1, 1 << 20) : edge.getWeight() / 3;
+                graph.setConnectionWeight(edge.getFrom(), edge.getDestination(), weight);
+            }
+            // Asked twice: the second answer comes from the cache and must match the edited graph too.
+            for (int i = 0; i < 2; i++) {
+                TestGraphs.assertShortest(graph, from, to, TestGraphs.distancesFrom(graph, from).get(to),
+                        graph.getPath(from, to));
+            }
+        }
+        assertTrue(graph.getPathCache().getHits() > 0);
+    }
+
+    @Test
+    void distancesMatchBaseline() {
+        Random random = new Random(4);
+        ListGraph<TestGraphs.Place> graph = TestGraphs.randomGraph(random, 300, 700);
+        CompactGraph<TestGraphs.Place> compact = CompactGraph.of(graph);
+        List<TestGraphs.Place> places = new ArrayList<>(graph.getNodes());
+        List<TestGraphs.Place> sources = places.subList(0, 12);
+        List<TestGraphs.Place> targets = places.subList(100, 160);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        DistanceMatrix<TestGraphs.Place> matrix = graph.getDistanceMatrix(sources, targets, pool);
+        pool.shutdown();
+        for (int row = 0; row < sources.size(); row++) {
+            TestGraphs.Place from = sources.get(row);
+            Map<TestGraphs.Place, Long> expected = TestGraphs.distancesFrom(graph, from);
+            long[] distances = graph.getDistances(from, targets);
+            long[] compactDistances = compact.getDistances(from, targets);
+            for (int column = 0; column < targets.size(); column++) {
+                TestGraphs.Place to = targets.get(column);
+                long distance = expected.getOrDefault(to, (long) DistanceMatrix.UNREACHABLE);
+                assertEquals(distance, distances[column]);
+                assertEquals(distance, compactDistances[column]);
+                assertEquals(distance, matrix.getDistance(row, column));
+                TestGraphs.assertShortest(graph, from, to, expected.get(to), compact.getPath(from, to));
+                assertEquals(expected.containsKey(to), compact.pathExists(from, to));
+            }
+        }
+    }
+
+    @Test
+    void oversizedDistanceMatrixIsRejected() {
+        List<String> places = Collections.nCopies(70_000, "A");
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> DistanceMatrix.compute(places, places, pool, (from, targets) -> new long[targets.size()]));
+            assertTrue(e.getMessage().contains("70000 x 70000"), e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void distancesBeyondIntRangeAreExact() {
+        ListGraph<TestGraphs.Place> graph = new ListGraph<>();
+        graph.setCoordinates(TestGraphs.Place::getX, TestGraphs.Place::getY);
+        List<TestGraphs.Place> chain = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            TestGraphs.Place place = new TestGraphs.Place("C" + i, i, 0);
+            chain.add(place);
+            graph.add(place);
+            if (i > 0) {
+                graph.connect(chain.get(i - 1), place, "Long road", Integer.MAX_VALUE - i);
+            }
+        }
+        long expected = 3L * Integer.MAX_VALUE - 6;
+        for (RouteMode mode : RouteMode.values()) {
+            graph.prepareQueries(mode);
+            TestGraphs.assertShortest(graph, chain.get(0), chain.get(3), expected,
+                    graph.getPath(chain.get(0), chain.get(3), mode));
+        }
+        assertEquals(expected, graph.getDistances(chain.get(0), chain.subList(3, 4))[0]);
+    }
+
+    @Test
+    void selfLoopsAreRejectedWithoutChangingTheGraph() {
+        ListGraph<String> graph = new ListGraph<>();
+        graph.add("A");
+        graph.add("B");
+        graph.connect("A", "B", "AB", 4);
+        assertThrows(IllegalArgumentException.class, () -> graph.connect("A", "A", "AA", 1));
+        assertThrows(IllegalArgumentException.class, () -> graph.disconnect("A", "A"));
+        assertThrows(IllegalArgumentException.class,
+                () -> graph.connectAll(List.of("B", "B"), List.of("A", "B"), List.of("BA", "BB"), new int[] {1, 1}));
+        assertNull(graph.getEdgeBetween("A", "A"));
+        assertEquals(1, graph.getEdgesFrom("A").size());
+        assertEquals(1, graph.getEdgesFrom("B").size());
+        assertEquals(4, graph.getPath("B", "A").get(0).getWeight());
+    }
+
+    @Test
+    void placesWithoutFiniteCoordinatesAreRejected() {
+        ListGraph<TestGraphs.Place> graph = TestGraphs.randomGraph(new Random(10), 20, 30);
+        graph.getSpatialIndex();
+        int before = graph.getNodes().size();
+        TestGraphs.Place lost = new TestGraphs.Place("Lost", Double.NaN, 1);
+        assertThrows(IllegalArgumentException.class, () -> graph.add(lost));
+        assertThrows(IllegalArgumentException.class,
+                () -> graph.add(new TestGraphs.Place("Far", 1, Double.POSITIVE_INFINITY)));
+        assertEquals(before, graph.getNodes().size());
+        assertFalse(graph.getNodes().contains(lost));
+        TestGraphs.Place found = new TestGraphs.Place("Found", 500, 500);
+        graph.add(found);
+        assertEquals(found, graph.getNearest(500, 500));
+    }
+
+    @Test
+    void deserializedGraphRoutesInItsSavedMode() throws Exception {
+        ListGraph<String> graph = new ListGraph<>();
+        graph.add("A");
+        graph.add("B");
+        graph.add("C");
+        graph.connect("A", "B", "AB", 4);
+        graph.connect("B", "C", "BC", 5);
+        graph.connect("A", "C", "AC", 12);
+        graph.setRouteMode(RouteMode.A_STAR);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(graph);
+        }
+
+        // Coordinate functions are not serialized, so A* has to fall back to a zero heuristic.
+        @SuppressWarnings("unchecked")
+        ListGraph<String> read = (ListGraph<String>) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(RouteMode.A_STAR, read.getRouteMode());
+        TestGraphs.assertShortest(read, "A", "C", 9L, read.getPath("A", "C"));
+        read.prepareQueries(RouteMode.A_STAR);
+        assertTrue(read.isQueryReady(RouteMode.A_STAR));
+        TestGraphs.assertShortest(read, "C", "A", 9L, read.getPath("C", "A"));
+    }
+
+    private static void assertAllModesShortest(ListGraph<TestGraphs.Place> graph, Random random) {
+        List<TestGraphs.Place> places = new ArrayList<>(graph.getNodes());
+        for (int i = 0; i < QUERIES; i++) {
+            TestGraphs.Place from = places.get(random.nextInt(places.size()));
+            TestGraphs.Place to = places.get(random.nextInt(places.size()));
+            Long expected = TestGraphs.distancesFrom(graph, from).get(to);
+            assertEquals(expected != null, graph.pathExists(from, to));
+            for (RouteMode mode : RouteMode.values()) {
+                graph.prepareQueries(mode);
+                TestGraphs.assertShortest(graph, from, to, expected, graph.getPath(from, to, mode));
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class TestGraphs {
+    private TestGraphs() {
+    }
+
+    static final class Place {
+        private final String name;
+        private final double x;
+        private final double y;
+
+        Place(String name, double x, double y) {
+            this.name = name;
+            this.x = x;
+            this.y = y;
+        }
+
+        double getX() {
+            return x;
+        }
+
+        double getY() {
+            return y;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    // Places scattered over a square, each road leading to one of the nearest few places like on a real map;
+    // a handful of places are left isolated.
+    static ListGraph<Place> randomGraph(Random random, int placeCount, int connectionCount) {
+        ListGraph<Place> graph = new ListGraph<>();
+        graph.setCoordinates(Place::getX, Place::getY);
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < placeCount; i++) {
+            Place place = new Place("P" + i, random.nextDouble() * 1000, random.nextDouble() * 1000);
+            places.add(place);
+            graph.add(place);
+        }
+        List<Place> linked = places.subList(0, placeCount - placeCount / 20);
+        for (int i = 0; i < connectionCount; i++) {
+            Place from = linked.get(random.nextInt(linked.size()));
+            List<Place> nearest = new ArrayList<>(linked);
+            nearest.sort(Comparator.comparingDouble(place -> distance(from, place)));
+            Place to = nearest.get(1 + random.nextInt(Math.min(6, nearest.size() - 1)));
+            if (graph.getEdgeBetween(from, to) == null) {
+                graph.connect(from, to, "R" + i, (int) distance(from, to) + random.nextInt(200));
+            }
+        }
+        return graph;
+    }
+
+    private static double distance(Place from, Place to) {
+        return Math.hypot(from.getX() - to.getX(), from.getY() - to.getY());
+    }
+
+    static <T> Map<T, Long> distancesFrom(Graph<T> graph, T source) {
+        Map<T, Long> distances = new HashMap<>();
+        PriorityQueue<Map.Entry<T, Long>> queue = new PriorityQueue<>(Map.Entry.comparingByValue());
+        distances.put(source, 0L);
+        queue.add(new AbstractMap.SimpleEntry<>(source, 0L));
+        while (!queue.isEmpty()) {
+            Map.Entry<T, Long> current = queue.poll();
+            if (current.getValue() > distances.get(current.getKey())) {
+                continue;
+            }
+            for (Edge<T> edge : graph.getEdgesFrom(current.getKey())) {
+                long distance = current.getValue() + edge.getWeight();
+                Long known = distances.get(edge.getDestination());
+                if (known == null || distance < known) {
+                    distances.put(edge.getDestination(), distance);
+                    queue.add(new AbstractMap.SimpleEntry<>(edge.getDestination(), distance));
+                }
+            }
+        }
+        return distances;
+    }
+
+    static <T> void assertShortest(Graph<T> graph, T from, T to, Long expected, List<Edge<T>> path) {
+        if (expected == null || from.equals(to)) {
+            assertNull(path, () -> "no path expected from " + from + " to " + to);
+            return;
+        }
+        assertNotNull(path, () -> "path expected from " + from + " to " + to);
+        T at = from;
+        long total = 0;
+        for (Edge<T> edge : path) {
+            assertEquals(at, edge.getFrom());
+            assertNotNull(graph.getEdgeBetween(at, edge.getDestination()));
+            assertEquals(graph.getEdgeBetween(at, edge.getDestination()).getWeight(), edge.getWeight());
+            total += edge.getWeight();
+            at = edge.getDestination();
+        }
+        assertEquals(to, at);
+        assertEquals(expected.longValue(), total, () -> "path from " + from + " to " + to + " is not shortest");
+    }
+}